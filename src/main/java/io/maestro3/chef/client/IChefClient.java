@@ -22,9 +22,18 @@ import io.maestro3.chef.client.context.IChefContext;
 import io.maestro3.chef.client.exception.ChefClientException;
 import io.maestro3.chef.client.response.IChefResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IChefClient {
 
     <R> IChefResponse<R> execute(IChefCommand<R> command) throws ChefClientException;
 
+    /**
+     * Executes command without blocking the calling thread. Number of concurrently running requests is limited per
+     * chef context, requests above the limit wait in a queue. Returned future fails with {@link ChefClientException}
+     * (wrapped into {@link java.util.concurrent.CompletionException}) on any error.
+     */
+    <R> CompletableFuture<IChefResponse<R>> executeAsync(IChefCommand<R> command);
+
     IChefContext getContext();
 }
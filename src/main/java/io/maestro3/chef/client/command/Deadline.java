@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.command;
+
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a chef operation must complete. A single deadline is shared by all requests of an operation,
+ * e.g. pages of a search and retries of every page, so each of them gets only the time left by the previous ones.
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout > 0, "timeout must be positive.");
+        Assert.notNull(unit, "unit cannot be null.");
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public static Deadline after(Duration timeout) {
+        Assert.notNull(timeout, "timeout cannot be null.");
+        return after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return milliseconds left, zero or negative if the deadline expired
+     */
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @throws ChefDeadlineExceededException if the deadline expired
+     */
+    public void check(String operation) throws ChefDeadlineExceededException {
+        if (isExpired()) {
+            throw new ChefDeadlineExceededException("Deadline exceeded before " + operation + ".");
+        }
+    }
+
+    /**
+     * @return the earlier of this deadline and the given one, this deadline if the given one is null
+     */
+    public Deadline min(Deadline other) {
+        return other != null && other.deadlineNanos - deadlineNanos < 0 ? other : this;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remainingMillis=" + remainingMillis() + '}';
+    }
+}
@@ -18,6 +18,7 @@
 package io.maestro3.chef.client.command;
 
 import io.maestro3.chef.client.http.client.RequestMethod;
+import io.maestro3.chef.client.http.client.RetryPolicy;
 
 import java.lang.reflect.Type;
 
@@ -53,4 +54,28 @@ public interface IChefCommand<R> {
      */
     boolean getReturnRaw();
 
+    /**
+     * @return <code>true</code> if repeating the command has the same effect as executing it once, so it may be
+     * retried after the server failed to answer; by default all methods except POST and PATCH
+     */
+    default boolean isIdempotent() {
+        return getMethod() != RequestMethod.POST && getMethod() != RequestMethod.PATCH;
+    }
+
+    /**
+     * @return policy of retrying failed executions of the command, <code>null</code> for the default policy of the
+     * chef server, {@link RetryPolicy#NONE} to never retry
+     */
+    default RetryPolicy getRetryPolicy() {
+        return null;
+    }
+
+    /**
+     * @return time by which the command must complete including its retries, <code>null</code> if it is limited only
+     * by the timeouts of chef client
+     */
+    default Deadline getDeadline() {
+        return null;
+    }
+
 }
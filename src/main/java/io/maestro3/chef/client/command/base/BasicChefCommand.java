@@ -17,6 +17,7 @@
 
 package io.maestro3.chef.client.command.base;
 
+import io.maestro3.chef.client.command.Deadline;
 import io.maestro3.chef.client.command.IChefCommand;
 import io.maestro3.chef.client.http.client.RequestMethod;
 import io.maestro3.chef.client.utils.ReflectionUtils;
@@ -31,6 +32,7 @@ public abstract class BasicChefCommand<R> implements IChefCommand<R> {
     private transient String resource;
     private transient String query;
     private transient boolean returnRaw;
+    private transient Deadline deadline;
 
     protected BasicChefCommand(RequestMethod method, String resource) {
         this(method, resource, null);
@@ -70,4 +72,13 @@ public abstract class BasicChefCommand<R> implements IChefCommand<R> {
         this.returnRaw = returnRaw;
     }
 
+    @Override
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
 }
@@ -93,6 +93,14 @@ public class GetNodesAttributesCommand<T> extends BasicChefCommand<T> {
         return querySearchString + "&sort=X_CHEF_id_CHEF_X%20asc&start=" + skip + "&rows=" + limit;
     }
 
+    /**
+     * Search is sent as POST only to carry the requested attributes, it does not change anything on the server.
+     */
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public Object getRequestEntity() {
         return searchMap;
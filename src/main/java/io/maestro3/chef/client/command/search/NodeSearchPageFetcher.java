@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.command.search;
+
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
+import io.maestro3.chef.client.exception.ChefClientException;
+import io.maestro3.chef.client.response.IChefResponse;
+import io.maestro3.sdk.internal.util.Assert;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Requests single pages of a node search. Failed pages are retried by the chef client according to its retry policy.
+ * All pages share the deadline of the search, if any.
+ *
+ * @param <T> type of a single search row
+ */
+class NodeSearchPageFetcher<T> {
+
+    private final IChefClient client;
+    private final Class<? extends IGetNodesAttributesResult<T>> resultType;
+    private final Map<String, List<String>> searchMap;
+    private final Map<String, String> queryParameters;
+    private final int pageSize;
+    private final Deadline deadline;
+
+    NodeSearchPageFetcher(IChefClient client, Class<? extends IGetNodesAttributesResult<T>> resultType,
+                          Map<String, List<String>> searchMap, Map<String, String> queryParameters, int pageSize,
+                          Deadline deadline) {
+        Assert.notNull(client, "client can't be null.");
+        Assert.notNull(resultType, "resultType can't be null.");
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive.");
+        }
+        this.client = client;
+        this.resultType = resultType;
+        this.searchMap = searchMap;
+        this.queryParameters = queryParameters;
+        this.pageSize = pageSize;
+        this.deadline = deadline;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return future of the page starting at given row, fails with {@link ChefClientException} after all retries;
+     * cancelling it aborts the request of the page
+     */
+    CompletableFuture<IGetNodesAttributesResult<T>> fetch(int start) {
+        return request(resultType, start);
+    }
+
+    static <T> List<T> rowsOf(IGetNodesAttributesResult<T> page) {
+        return page.getResults() != null ? page.getResults() : Collections.emptyList();
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private <R extends IGetNodesAttributesResult<T>> CompletableFuture<IGetNodesAttributesResult<T>> request(Class<R> type, int start) {
+        GetNodesAttributesCommand<R> command = new GetNodesAttributesCommand<>(type, searchMap, queryParameters, start, pageSize);
+        command.setDeadline(deadline);
+        CompletableFuture<IChefResponse<R>> request = client.executeAsync(command);
+        CompletableFuture<IGetNodesAttributesResult<T>> page = request.thenApply(response -> {
+            if (response.getErrorOccurred() || response.getResult() == null) {
+                throw new CompletionException(new ChefClientException(response.getDescription()));
+            }
+            return response.getResult();
+        });
+        // dependent future does not pass cancellation on by itself
+        page.whenComplete((result, error) -> {
+            if (page.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return page;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.command.search;
+
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
+import io.maestro3.chef.client.exception.ChefClientException;
+import io.maestro3.chef.client.exception.UncheckedChefClientException;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over node search pages, requesting a page only when the consumer advances. At most one page is prefetched
+ * while the current one is processed, so memory stays bounded by two pages regardless of the number of nodes.
+ * Failures are thrown as {@link UncheckedChefClientException}. Instances are not thread safe.
+ *
+ * @param <T> type of a single search row
+ */
+public class NodeSearchPageIterator<T> implements Iterator<List<T>> {
+
+    private final NodeSearchPageFetcher<T> fetcher;
+
+    private int nextStart;
+    private boolean exhausted;
+    private List<T> nextPage;
+    private CompletableFuture<IGetNodesAttributesResult<T>> pending;
+
+    public NodeSearchPageIterator(IChefClient client, Class<? extends IGetNodesAttributesResult<T>> resultType,
+                                  Map<String, List<String>> searchMap, Map<String, String> queryParameters, int pageSize) {
+        this(client, resultType, searchMap, queryParameters, pageSize, null);
+    }
+
+    /**
+     * @param deadline time by which the consumer must reach the end of the search, next pages fail with
+     *                 {@link io.maestro3.chef.client.exception.ChefDeadlineExceededException} after it; may be null
+     */
+    public NodeSearchPageIterator(IChefClient client, Class<? extends IGetNodesAttributesResult<T>> resultType,
+                                  Map<String, List<String>> searchMap, Map<String, String> queryParameters, int pageSize,
+                                  Deadline deadline) {
+        this.fetcher = new NodeSearchPageFetcher<>(client, resultType, searchMap, queryParameters, pageSize, deadline);
+    }
+
+    /**
+     * @return lazy stream of rows in sort order, closing the stream cancels the prefetched page
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::cancel)
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPage != null) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        if (pending == null) {
+            pending = fetcher.fetch(nextStart);
+        }
+        IGetNodesAttributesResult<T> page = await(pending);
+        pending = null;
+
+        List<T> rows = NodeSearchPageFetcher.rowsOf(page);
+        nextStart += fetcher.getPageSize();
+        Integer total = page.getTotal();
+        if (rows.isEmpty()) {
+            exhausted = true;
+            return false;
+        }
+        if (total == null || nextStart >= total) {
+            // if chef does not return "total", then forget about pagination and return what we got
+            exhausted = true;
+        } else {
+            pending = fetcher.fetch(nextStart);
+        }
+        nextPage = rows;
+        return true;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<T> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    /**
+     * Stops iteration and drops the prefetched page if any.
+     */
+    public void cancel() {
+        exhausted = true;
+        nextPage = null;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private IGetNodesAttributesResult<T> await(CompletableFuture<IGetNodesAttributesResult<T>> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            exhausted = true;
+            Throwable cause = NodeSearchPageFetcher.unwrap(e);
+            if (cause instanceof ChefClientException) {
+                throw new UncheckedChefClientException((ChefClientException) cause);
+            }
+            throw new UncheckedChefClientException(new ChefClientException("Node search failed. " + cause.getMessage(), cause));
+        }
+    }
+}
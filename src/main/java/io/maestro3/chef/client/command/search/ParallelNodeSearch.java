@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.command.search;
+
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
+import io.maestro3.chef.client.exception.ChefClientException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fetches all pages of a node search. The first page gives the total number of rows, the remaining pages are
+ * requested concurrently by a limited number of lanes and put back in sort order. Failed pages are retried by the chef client.
+ * Once the search fails, times out or is cancelled, requests of pages still in flight are aborted.
+ *
+ * @param <T> type of a single search row
+ */
+public class ParallelNodeSearch<T> {
+
+    /** number of rows chef returns in one page of node search, used by node searches of the services */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final NodeSearchPageFetcher<T> fetcher;
+    private final int pageSize;
+    private final int parallelism;
+
+    /**
+     * @param parallelism maximum number of pages requested at the same time
+     */
+    public ParallelNodeSearch(IChefClient client, Class<? extends IGetNodesAttributesResult<T>> resultType,
+                              Map<String, List<String>> searchMap, Map<String, String> queryParameters,
+                              int pageSize, int parallelism) {
+        this(client, resultType, searchMap, queryParameters, pageSize, parallelism, null);
+    }
+
+    /**
+     * @param deadline time by which the whole search must complete, pages not started by then are not requested and
+     *                 the search fails with {@link io.maestro3.chef.client.exception.ChefDeadlineExceededException};
+     *                 may be null
+     */
+    public ParallelNodeSearch(IChefClient client, Class<? extends IGetNodesAttributesResult<T>> resultType,
+                              Map<String, List<String>> searchMap, Map<String, String> queryParameters,
+                              int pageSize, int parallelism, Deadline deadline) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        this.fetcher = new NodeSearchPageFetcher<>(client, resultType, searchMap, queryParameters, pageSize, deadline);
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return all rows in sort order
+     * @throws ChefClientException if any page failed after all retries
+     */
+    public List<T> execute() throws ChefClientException {
+        try {
+            return executeAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ChefClientException) {
+                throw (ChefClientException) e.getCause();
+            }
+            throw new ChefClientException("Node search failed. " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * @return future of all rows in sort order, fails with {@link ChefClientException} if any page failed after all
+     * retries
+     */
+    public CompletableFuture<List<T>> executeAsync() {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        fetch(0, result).whenComplete((first, error) -> {
+            if (error != null) {
+                result.completeExceptionally(NodeSearchPageFetcher.unwrap(error));
+                return;
+            }
+            List<T> firstRows = NodeSearchPageFetcher.rowsOf(first);
+            Integer total = first.getTotal();
+            if (total == null || total <= pageSize) {
+                // if chef does not return "total", then forget about pagination and return what we got
+                result.complete(firstRows);
+                return;
+            }
+
+            int pages = (total + pageSize - 1) / pageSize;
+            AtomicReferenceArray<List<T>> pageRows = new AtomicReferenceArray<>(pages);
+            pageRows.set(0, firstRows);
+            AtomicInteger nextPage = new AtomicInteger(1);
+
+            int lanes = Math.min(parallelism, pages - 1);
+            CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+            for (int lane = 0; lane < lanes; lane++) {
+                laneFutures[lane] = runLane(nextPage, pages, pageRows, result);
+            }
+            CompletableFuture.allOf(laneFutures).whenComplete((ignored, laneError) -> {
+                if (laneError != null) {
+                    result.completeExceptionally(NodeSearchPageFetcher.unwrap(laneError));
+                } else {
+                    result.complete(assemble(pageRows, total));
+                }
+            });
+        });
+        return result;
+    }
+
+    private CompletableFuture<Void> runLane(AtomicInteger nextPage, int pages, AtomicReferenceArray<List<T>> pageRows,
+                                            CompletableFuture<List<T>> result) {
+        int page = nextPage.getAndIncrement();
+        if (page >= pages || result.isDone()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return fetch(page * pageSize, result)
+                .whenComplete((rows, error) -> {
+                    if (error != null) {
+                        // stop other lanes from requesting more pages
+                        result.completeExceptionally(NodeSearchPageFetcher.unwrap(error));
+                    }
+                })
+                .thenCompose(rows -> {
+                    pageRows.set(page, NodeSearchPageFetcher.rowsOf(rows));
+                    return runLane(nextPage, pages, pageRows, result);
+                });
+    }
+
+    private CompletableFuture<IGetNodesAttributesResult<T>> fetch(int start, CompletableFuture<List<T>> result) {
+        CompletableFuture<IGetNodesAttributesResult<T>> page = fetcher.fetch(start);
+        result.whenComplete((rows, error) -> {
+            if (error != null) {
+                page.cancel(true);
+            }
+        });
+        return page;
+    }
+
+    private List<T> assemble(AtomicReferenceArray<List<T>> pageRows, int total) {
+        List<T> results = new ArrayList<>(total);
+        for (int page = 0; page < pageRows.length(); page++) {
+            List<T> rows = pageRows.get(page);
+            if (rows != null) {
+                results.addAll(rows);
+            }
+        }
+        return results;
+    }
+}
@@ -17,10 +17,17 @@
 
 package io.maestro3.chef.client.context;
 
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.maestro3.chef.client.context.impl.ChefContext;
 import io.maestro3.chef.model.ChefConfiguration;
+import io.maestro3.chef.model.ChefConnectionSettings;
 import io.maestro3.chef.model.ChefRoleInfo;
 import io.maestro3.chef.model.TenantChefConfiguration;
 import io.maestro3.chef.service.IChefConfigurationService;
@@ -34,15 +41,25 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,11 +73,6 @@ public class ChefContextFactory implements IChefContextFactory {
     private static final String INSECURE_PROTOCOL = "http://";
     private static final String SECURE_PROTOCOL = "https://";
     private static final String SEPARATOR = "/";
-    private static final String PROJECT_KEY_PREFIX = "project_";
-
-    private final Cache<String, IChefContext> cache = CacheBuilder.newBuilder()
-        .expireAfterAccess(2, TimeUnit.HOURS)
-        .build();
 
     @Autowired
     private IFileService fileService;
@@ -71,30 +83,54 @@ public class ChefContextFactory implements IChefContextFactory {
     @Autowired
     private IChefTenantConfigProvider tenantSettingsService;
 
+    @Value("${chef.context.refresh.minutes:30}")
+    private long refreshMinutes;
+
+    // built contexts are refreshed in the background, callers keep getting the previous context meanwhile
+    private LoadingCache<ChefContextKey, IChefContext> cache;
+    // last built context of each chef server, both zone and project contexts are registered here
+    private final Cache<String, IChefContext> serverContexts = CacheBuilder.newBuilder()
+        .expireAfterAccess(2, TimeUnit.HOURS)
+        .build();
+    // parsed keys shared by all contexts built from the same key material of the same server and organization
+    private final Cache<String, Key> authenticationKeys = CacheBuilder.newBuilder()
+        .weakValues()
+        .build();
+    private ExecutorService refreshExecutor;
+    private final AtomicLong contextVersions = new AtomicLong();
+
     // default values
     private boolean secure = true;
 
+    @PostConstruct
+    public void init() {
+        refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("chef-context-refresh-%d")
+            .setDaemon(true)
+            .build());
+        cache = CacheBuilder.newBuilder()
+            .expireAfterAccess(2, TimeUnit.HOURS)
+            .refreshAfterWrite(refreshMinutes, TimeUnit.MINUTES)
+            .build(CacheLoader.asyncReloading(new CacheLoader<ChefContextKey, IChefContext>() {
+                @Override
+                public IChefContext load(ChefContextKey key) {
+                    return loadContext(key);
+                }
+            }, refreshExecutor));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
     @Override
     public IChefContext getInstance(ChefConfiguration configuration) {
         Assert.notNull(configuration, "Chef configuration can't be null");
 
-        String cacheKey = configuration.getServerId();
-        IChefContext context = cache.getIfPresent(cacheKey);
-        if (context != null) {
-            cache.put(context.getServerId(), context);
-            return context;
-        }
-
-        String apiUsername = StringEscapeUtils.unescapeJava(secretsService.getSecretValue(configuration.getApiUsernamePlaceholder()));
-        String authentication = StringEscapeUtils.unescapeJava(secretsService.getSecretValue(configuration.getAuthenticationPlaceholder()));
-        context = getChefContext(ChefContextType.ZONE, configuration.getServerId(), apiUsername,
-            authentication, configuration.getChefVersion(), configuration.getChefOrganization(),
-            configuration.getRoles(), configuration.getZones(), configuration.getCustomDataBagMapping());
-        if (context != null) {
-            cache.put(cacheKey, context);
-            cache.put(context.getServerId(), context);
-        }
-        return context;
+        return getOrLoad(ChefContextKey.zone(configuration.getServerId()), () -> createZoneContext(configuration));
     }
 
     @Override
@@ -118,38 +154,8 @@ public class ChefContextFactory implements IChefContextFactory {
 
         ChefConfiguration chefConfiguration = chefConfigurationService.findByServerId(configuration.getCustomChefConfigurationId());
 
-        String host = chefConfiguration.getServerId();
-        String cacheKey = PROJECT_KEY_PREFIX + tenant + region + host;
-        IChefContext context = cache.getIfPresent(cacheKey);
-        if (context != null) {
-            cache.put(context.getServerId(), context);
-            return context;
-        }
-
-
-        String apiUsername = "admin";
-
-        String apiKeyUrl = chefConfiguration.getCustomChefApiKeyUrl();
-        if (StringUtils.isBlank(apiKeyUrl)) {
-            LOG.error("EPC Chef server has no API key URL for project {}", tenant);
-            return null;
-        }
-
-        //read API key data
-        String apiKeyString = getApiKeyData(apiKeyUrl);
-        if (StringUtils.isBlank(apiKeyString)) {
-            LOG.error("Blank API key string provided");
-            return null;
-        }
-
-        context = getChefContext(ChefContextType.PROJECT, host, apiUsername, apiKeyString,
-            chefConfiguration.getChefVersion(), chefConfiguration.getChefOrganization(),
-            chefConfiguration.getRoles(), chefConfiguration.getZones(), chefConfiguration.getCustomDataBagMapping());
-        if (context != null) {
-            cache.put(cacheKey, context);
-            cache.put(context.getServerId(), context);
-        }
-        return context;
+        return getOrLoad(ChefContextKey.project(chefConfiguration.getServerId()),
+            () -> createProjectContext(chefConfiguration));
     }
 
     @Override
@@ -170,7 +176,7 @@ public class ChefContextFactory implements IChefContextFactory {
 
     @Override
     public IChefContext getInstance(String serverId) {
-        return cache.getIfPresent(serverId);
+        return serverContexts.getIfPresent(serverId);
     }
 
     @Override
@@ -192,13 +198,77 @@ public class ChefContextFactory implements IChefContextFactory {
         this.secure = secure;
     }
 
+    /**
+     * Returns cached context or builds it once for all concurrent callers of the same key.
+     * Context which can not be built (e.g. blank credentials) is not cached.
+     */
+    private IChefContext getOrLoad(ChefContextKey key, Callable<IChefContext> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Unable to create chef context for " + key, e.getCause());
+        }
+    }
+
+    private IChefContext loadContext(ChefContextKey key) {
+        ChefConfiguration configuration = chefConfigurationService.findByServerId(key.serverId);
+        if (configuration == null) {
+            return null;
+        }
+        return key.type == ChefContextType.PROJECT
+            ? createProjectContext(configuration)
+            : createZoneContext(configuration);
+    }
+
+    private IChefContext createZoneContext(ChefConfiguration configuration) {
+        String apiUsername = StringEscapeUtils.unescapeJava(secretsService.getSecretValue(configuration.getApiUsernamePlaceholder()));
+        String authentication = StringEscapeUtils.unescapeJava(secretsService.getSecretValue(configuration.getAuthenticationPlaceholder()));
+        return register(getChefContext(ChefContextType.ZONE, configuration.getServerId(), apiUsername,
+            authentication, configuration.getChefVersion(), configuration.getChefOrganization(),
+            configuration.getRoles(), configuration.getZones(), configuration.getCustomDataBagMapping(),
+            configuration.getConnectionSettings()));
+    }
+
+    private IChefContext createProjectContext(ChefConfiguration chefConfiguration) {
+        String apiUsername = "admin";
+
+        String apiKeyUrl = chefConfiguration.getCustomChefApiKeyUrl();
+        if (StringUtils.isBlank(apiKeyUrl)) {
+            LOG.error("EPC Chef server has no API key URL for server {}", chefConfiguration.getServerId());
+            return null;
+        }
+
+        //read API key data
+        String apiKeyString = getApiKeyData(apiKeyUrl);
+        if (StringUtils.isBlank(apiKeyString)) {
+            LOG.error("Blank API key string provided");
+            return null;
+        }
+
+        return register(getChefContext(ChefContextType.PROJECT, chefConfiguration.getServerId(), apiUsername, apiKeyString,
+            chefConfiguration.getChefVersion(), chefConfiguration.getChefOrganization(),
+            chefConfiguration.getRoles(), chefConfiguration.getZones(), chefConfiguration.getCustomDataBagMapping(),
+            chefConfiguration.getConnectionSettings()));
+    }
+
+    private IChefContext register(IChefContext context) {
+        if (context != null) {
+            serverContexts.put(context.getServerId(), context);
+        }
+        return context;
+    }
+
     private IChefContext getChefContext(ChefContextType chefContextType, String host, String apiUsername, String authentication,
-                                        String chefVersion, String chefOrganization, List<ChefRoleInfo> chefRoles, List<String> regions, Map<String, String> customDataBagMapping) {
+                                        String chefVersion, String chefOrganization, List<ChefRoleInfo> chefRoles, List<String> regions, Map<String, String> customDataBagMapping,
+                                        ChefConnectionSettings connectionSettings) {
         if (StringUtils.isBlank(host) || StringUtils.isBlank(apiUsername) || StringUtils.isBlank(authentication)) {
             return null;
         }
 
-        Key key = SecurityHelper.loadPrivateKey(authentication);
+        Key key = internAuthenticationKey(host, chefOrganization, authentication);
         if (key == null) {
             throw new IllegalArgumentException("Given zone orchestration settings contain invalid authentication key");
         }
@@ -213,7 +283,21 @@ public class ChefContextFactory implements IChefContextFactory {
             .setChefVersion(chefVersion)
             .setServerId(host)
             .setRoles(chefRoles)
-            .setChefOrganization(chefOrganization);
+            .setChefOrganization(chefOrganization)
+            .setConnectionSettings(connectionSettings)
+            .setVersion(contextVersions.incrementAndGet());
+    }
+
+    private Key internAuthenticationKey(String host, String chefOrganization, String authentication) {
+        String fingerprint = Hashing.sha256().hashString(authentication, StandardCharsets.UTF_8).toString();
+        try {
+            return authenticationKeys.get(host + '|' + chefOrganization + '|' + fingerprint,
+                () -> SecurityHelper.loadPrivateKey(authentication));
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalArgumentException("Given zone orchestration settings contain invalid authentication key", e.getCause());
+        }
     }
 
     private String getApiKeyData(String apiKeyUrl) {
@@ -244,8 +328,78 @@ public class ChefContextFactory implements IChefContextFactory {
         return result;
     }
 
+    @Override
+    public void refreshServerContexts(ChefConfiguration chefConfiguration) {
+        Assert.notNull(chefConfiguration, "Chef configuration can't be null");
+
+        String serverId = chefConfiguration.getServerId();
+        ConcurrentMap<ChefContextKey, IChefContext> contexts = cache.asMap();
+        for (Map.Entry<ChefContextKey, IChefContext> entry : contexts.entrySet()) {
+            if (!entry.getKey().serverId.equals(serverId)) {
+                continue;
+            }
+            IChefContext current = entry.getValue();
+            if (!(current instanceof ChefContext)) {
+                contexts.remove(entry.getKey(), current);
+                continue;
+            }
+            IChefContext updated = ((ChefContext) current).withServerConfiguration(chefConfiguration.getRoles(),
+                chefConfiguration.getZones(), chefConfiguration.getCustomDataBagMapping(), contextVersions.incrementAndGet());
+            // entry rebuilt concurrently by background refresh already contains new configuration
+            if (contexts.replace(entry.getKey(), current, updated)) {
+                register(updated);
+            }
+        }
+    }
+
     @Override
     public void invalidateCache() {
         cache.invalidateAll();
+        serverContexts.invalidateAll();
+    }
+
+    /**
+     * Project contexts depend only on the chef server, so all tenants and regions pointing at the same custom
+     * server share one context.
+     */
+    private static final class ChefContextKey {
+
+        private final ChefContextType type;
+        private final String serverId;
+
+        private ChefContextKey(ChefContextType type, String serverId) {
+            this.type = type;
+            this.serverId = serverId;
+        }
+
+        static ChefContextKey zone(String serverId) {
+            return new ChefContextKey(ChefContextType.ZONE, serverId);
+        }
+
+        static ChefContextKey project(String serverId) {
+            return new ChefContextKey(ChefContextType.PROJECT, serverId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ChefContextKey that = (ChefContextKey) o;
+            return type == that.type && Objects.equals(serverId, that.serverId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, serverId);
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + serverId;
+        }
     }
 }
@@ -17,6 +17,7 @@
 
 package io.maestro3.chef.client.context;
 
+import io.maestro3.chef.model.ChefConnectionSettings;
 import io.maestro3.chef.model.ChefRoleInfo;
 
 import java.security.Key;
@@ -84,4 +85,13 @@ public interface IChefContext {
      */
     Map<String, String> getDataBagMapping();
 
+    /**
+     * @return connection pool settings of the server, may be null if defaults should be used
+     */
+    ChefConnectionSettings getConnectionSettings();
+
+    /**
+     * @return version of the context, newer contexts of the same server always have greater version
+     */
+    long getVersion();
 }
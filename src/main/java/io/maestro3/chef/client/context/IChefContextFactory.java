@@ -31,5 +31,11 @@ public interface IChefContextFactory {
 
     String convertHostToUri(String host);
 
+    /**
+     * Replaces roles, regions and data bag mapping in all cached zone and project contexts of the given server.
+     * Key material is kept, so no secrets are fetched again.
+     */
+    void refreshServerContexts(ChefConfiguration chefConfiguration);
+
     void invalidateCache();
 }
@@ -19,6 +19,7 @@ package io.maestro3.chef.client.context.impl;
 
 import io.maestro3.chef.client.context.ChefContextType;
 import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.model.ChefConnectionSettings;
 import io.maestro3.chef.model.ChefRoleInfo;
 import io.maestro3.chef.model.ChefVersion;
 import io.maestro3.sdk.internal.util.Assert;
@@ -41,6 +42,8 @@ public class ChefContext implements IChefContext {
     private List<ChefRoleInfo> roles;
     private List<String> regions;
     private Map<String, String> dataBagMapping;
+    private ChefConnectionSettings connectionSettings;
+    private long version;
 
     @Override
     public List<String> getRegions() {
@@ -150,6 +153,47 @@ public class ChefContext implements IChefContext {
         return this;
     }
 
+    @Override
+    public ChefConnectionSettings getConnectionSettings() {
+        return connectionSettings;
+    }
+
+    public ChefContext setConnectionSettings(ChefConnectionSettings connectionSettings) {
+        this.connectionSettings = connectionSettings;
+        return this;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public ChefContext setVersion(long version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Creates a copy of this context with replaced server configuration. Key material and connection details
+     * are shared with this context, so clients and connection pools created for it stay valid.
+     */
+    public ChefContext withServerConfiguration(List<ChefRoleInfo> roles, List<String> regions,
+                                               Map<String, String> dataBagMapping, long version) {
+        return new ChefContext()
+            .setChefContextType(chefContextType)
+            .setAuthenticationKey(authenticationKey)
+            .setHost(host)
+            .setUsername(username)
+            .setChefVersion(chefVersion)
+            .setServerId(serverId)
+            .setChefOrganization(chefOrganization)
+            .setConnectionSettings(connectionSettings)
+            .setRoles(roles)
+            .setRegions(regions)
+            .setDataBagMapping(dataBagMapping)
+            .setVersion(version);
+    }
+
     @Override
     public String toString() {
         return "ChefContext{" +
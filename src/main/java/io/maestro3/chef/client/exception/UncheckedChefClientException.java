@@ -0,0 +1,33 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.exception;
+
+/**
+ * Wraps {@link ChefClientException} where checked exceptions can not be thrown, e.g. from iterators and streams.
+ */
+public class UncheckedChefClientException extends RuntimeException {
+
+    public UncheckedChefClientException(ChefClientException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized ChefClientException getCause() {
+        return (ChefClientException) super.getCause();
+    }
+}
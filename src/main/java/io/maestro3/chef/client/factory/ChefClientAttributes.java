@@ -17,6 +17,8 @@
 
 package io.maestro3.chef.client.factory;
 
+import java.util.Objects;
+
 public class ChefClientAttributes {
 
     private int connectionTimeout;
@@ -42,4 +44,21 @@ public class ChefClientAttributes {
     public void setSocketTimeout(int socketTimeout) {
         this.socketTimeout = socketTimeout;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ChefClientAttributes that = (ChefClientAttributes) o;
+        return connectionTimeout == that.connectionTimeout && socketTimeout == that.socketTimeout;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectionTimeout, socketTimeout);
+    }
 }
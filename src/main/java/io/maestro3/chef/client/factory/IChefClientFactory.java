@@ -17,19 +17,34 @@
 
 package io.maestro3.chef.client.factory;
 
+import com.google.common.cache.CacheStats;
 import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.context.ChefContextType;
 import io.maestro3.chef.client.context.IChefContext;
 
+import java.util.Map;
+
 public interface IChefClientFactory {
 
     IChefClient getInstance(IChefContext chefContext);
 
     /**
-     * Create chef client with new customized http client.
-     * Note: use it carefully, currently used only in admin app.
+     * Returns chef client with customized timeouts. Client shares connection pool of the server with regular
+     * clients and applies the timeouts to each of its requests, so no new http client is created.
+     * Note: currently used only in admin app.
      *
      * @param attributes custom timeouts for socket/connection
-     * @return IChefClient with new http client
+     * @return IChefClient cached per server and timeout profile
      */
     IChefClient getAdminInstance(IChefContext chefContext, ChefClientAttributes attributes);
+
+    /**
+     * @return hit, miss and eviction statistics of the client caches by context type
+     */
+    Map<ChefContextType, CacheStats> getCacheStats();
+
+    /**
+     * @return hit, miss and eviction statistics of the cache of admin clients
+     */
+    CacheStats getAdminCacheStats();
 }
@@ -17,90 +17,158 @@
 
 package io.maestro3.chef.client.factory.impl;
 
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.maestro3.chef.client.IChefClient;
 import io.maestro3.chef.client.context.ChefContextType;
 import io.maestro3.chef.client.context.IChefContext;
 import io.maestro3.chef.client.factory.ChefClientAttributes;
 import io.maestro3.chef.client.factory.IChefClientFactory;
-import io.maestro3.chef.client.factory.SyncedLazyInitializers;
-import io.maestro3.chef.client.http.client.HttpClientsCounter;
-import io.maestro3.chef.client.http.client.ICloseableHttpClientFactory;
 import io.maestro3.chef.client.impl.ChefClient;
 import io.maestro3.sdk.internal.util.Assert;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 @Component
 public class ChefClientFactory implements IChefClientFactory {
 
-    private static final int CLIENT_CACHE_SIZE = 100;
+    private static final Logger LOG = LoggerFactory.getLogger(ChefClientFactory.class);
 
-    private Cache<String, IChefClient> zoneChefClients = CacheBuilder.newBuilder()
-            .maximumSize(CLIENT_CACHE_SIZE)
-            .expireAfterAccess(1, TimeUnit.DAYS)
-            .build();
-
-    private Cache<String, IChefClient> projectChefClients = CacheBuilder.newBuilder()
-            .maximumSize(CLIENT_CACHE_SIZE)
-            .expireAfterAccess(3, TimeUnit.HOURS)
-            .build();
+    // cache hits are lock-free, misses create client once per key while other keys are served concurrently
+    private Cache<String, IChefClient> zoneChefClients;
+    private Cache<String, IChefClient> projectChefClients;
+    private Cache<AdminClientKey, IChefClient> adminChefClients;
 
     @Autowired
-    private ICloseableHttpClientFactory clientFactory;
-
-    private HttpClient zoneChefHttpClient;
-    private HttpClient projectChefHttpClient;
+    private ChefConnectionPoolManager connectionPoolManager;
+    @Autowired
+    private ChefServerLimiterRegistry serverLimiterRegistry;
+    @Autowired
+    private ChefServerCircuitBreakerRegistry circuitBreakerRegistry;
+    @Autowired
+    private ChefServerRetryBudgetRegistry retryBudgetRegistry;
+    @Autowired
+    private ChefServerHedgerRegistry hedgerRegistry;
 
-    private Lock lock = new ReentrantLock();
+    @Value("${chef.client.cache.zone.size:100}")
+    private long zoneClientCacheSize;
+    @Value("${chef.client.cache.project.size:1000}")
+    private long projectClientCacheSize;
+    @Value("${chef.client.cache.admin.size:100}")
+    private long adminClientCacheSize;
+    @Value("${chef.client.async.max.in.flight:16}")
+    private int asyncMaxInFlight;
 
     @PostConstruct
     public void init() {
-        zoneChefHttpClient = clientFactory.getCountedHttpClient("default-chef");
+        zoneChefClients = buildClientCache(zoneClientCacheSize, 1, TimeUnit.DAYS);
+        projectChefClients = buildClientCache(projectClientCacheSize, 3, TimeUnit.HOURS);
+        adminChefClients = buildClientCache(adminClientCacheSize, 1, TimeUnit.HOURS);
     }
 
     @Override
     public IChefClient getInstance(IChefContext chefContext) {
-        switch (chefContext.getChefContextType()) {
-            case PROJECT:
-                return getFromCacheOrCreateNew(chefContext, new ProjectCloseableHttpClientProvider());
-            case ZONE:
-            default:
-                return getFromCacheOrCreateNew(chefContext, new CloseableHttpClientProvider());
-        }
-
+        Cache<String, IChefClient> chefClients = resolveByType(chefContext.getChefContextType());
+        return getFromCacheOrCreateNew(chefClients, chefContext.getServerId(), chefContext,
+                () -> connectionPoolManager.getRequestConfig(chefContext));
     }
 
     @Override
     public IChefClient getAdminInstance(IChefContext chefContext, ChefClientAttributes attributes) {
-        return getFromCacheOrCreateNew(chefContext, new HttpClientWithAttributesProvider(attributes));
+        Assert.notNull(attributes, "attributes cannot be null.");
+        AdminClientKey cacheKey = new AdminClientKey(chefContext.getChefContextType(), chefContext.getServerId(),
+                new ChefClientAttributes(attributes.getConnectionTimeout(), attributes.getSocketTimeout()));
+        // admin clients share connection pool of the server, custom timeouts are applied to each request
+        return getFromCacheOrCreateNew(adminChefClients, cacheKey, chefContext, () -> RequestConfig.custom()
+                .setConnectTimeout(attributes.getConnectionTimeout())
+                .setConnectionRequestTimeout(attributes.getConnectionTimeout())
+                .setSocketTimeout(attributes.getSocketTimeout())
+                .build());
     }
 
-    private synchronized IChefClient getFromCacheOrCreateNew(IChefContext chefContext, HttpClientProvider httpClientProvider) {
-        Cache<String, IChefClient> chefClients = resolveByType(chefContext.getChefContextType());
-        String cacheKey = chefContext.getServerId();
+    @Override
+    public Map<ChefContextType, CacheStats> getCacheStats() {
+        Map<ChefContextType, CacheStats> stats = new EnumMap<>(ChefContextType.class);
+        stats.put(ChefContextType.ZONE, zoneChefClients.stats());
+        stats.put(ChefContextType.PROJECT, projectChefClients.stats());
+        return stats;
+    }
+
+    @Override
+    public CacheStats getAdminCacheStats() {
+        return adminChefClients.stats();
+    }
+
+    /**
+     * @param requestConfig resolved only when a new client is created, cache hits don't pay for it
+     */
+    private <K> IChefClient getFromCacheOrCreateNew(Cache<K, IChefClient> chefClients, K cacheKey, IChefContext chefContext,
+                                                    Supplier<RequestConfig> requestConfig) {
         IChefClient chefClient = chefClients.getIfPresent(cacheKey);
-        if (chefClient != null) {
-            return chefClient;
+        if (chefClient == null) {
+            return loadClient(chefClients, cacheKey, chefContext, requestConfig);
+        }
+        // keeps http client and connection pool, only roles, regions and mapping of the context may change
+        if (chefClient instanceof ChefClient && ((ChefClient) chefClient).updateContext(chefContext)
+                && ((ChefClient) chefClient).getHttpClient() != connectionPoolManager.getHttpClient(chefContext)) {
+            // uri or connection settings of the server changed, its pool was rebuilt
+            chefClients.asMap().remove(cacheKey, chefClient);
+            return loadClient(chefClients, cacheKey, chefContext, requestConfig);
         }
+        return chefClient;
+    }
 
-        chefClient = new ChefClient(httpClientProvider.getHttpClient(), chefContext);
-        chefClients.put(cacheKey, chefClient);
+    private <K> IChefClient loadClient(Cache<K, IChefClient> chefClients, K cacheKey, IChefContext chefContext,
+                                       Supplier<RequestConfig> requestConfig) {
+        IChefClient chefClient;
+        try {
+            chefClient = chefClients.get(cacheKey, () -> new ChefClient(connectionPoolManager.getHttpClient(chefContext),
+                    connectionPoolManager.getAsyncHttpClient(chefContext), chefContext, asyncMaxInFlight, requestConfig.get(),
+                    serverLimiterRegistry.getLimiter(chefContext.getServerId()),
+                    circuitBreakerRegistry.getCircuitBreaker(chefContext.getServerId()),
+                    retryBudgetRegistry.getRetryBudget(chefContext.getServerId()),
+                    hedgerRegistry.getHedger(chefContext.getServerId()),
+                    hedgerRegistry.getExecutor(chefContext.getServerId())));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Unable to create chef client for " + cacheKey, e.getCause());
+        }
+        // client loaded by another thread might have an older context
+        if (chefClient instanceof ChefClient) {
+            ((ChefClient) chefClient).updateContext(chefContext);
+        }
         return chefClient;
     }
 
+    private static <K> Cache<K, IChefClient> buildClientCache(long maximumSize, long expireAfterAccess, TimeUnit unit) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess, unit)
+                .recordStats()
+                .removalListener((RemovalListener<K, IChefClient>) notification -> {
+                    if (notification.wasEvicted()) {
+                        LOG.debug("Chef client for {} evicted from cache: {}", notification.getKey(), notification.getCause());
+                    }
+                })
+                .build();
+    }
+
     private Cache<String, IChefClient> resolveByType(ChefContextType contextType) {
         Assert.notNull(contextType, "contextType cannot be null.");
         if (contextType == ChefContextType.PROJECT) {
@@ -110,62 +178,41 @@ public class ChefClientFactory implements IChefClientFactory {
         }
     }
 
-    @PreDestroy
-    private void destroy() throws IOException {
-        if (zoneChefClients instanceof CloseableHttpClient) {
-            ((CloseableHttpClient) zoneChefHttpClient).close();
+    private static final class AdminClientKey {
 
-        }
-        if (Objects.nonNull(projectChefHttpClient)) {
-            if (projectChefHttpClient instanceof CloseableHttpClient) {
-                ((CloseableHttpClient) projectChefHttpClient).close();
+        private final ChefContextType contextType;
+        private final String serverId;
+        private final ChefClientAttributes attributes;
 
-            }
+        private AdminClientKey(ChefContextType contextType, String serverId, ChefClientAttributes attributes) {
+            this.contextType = contextType;
+            this.serverId = serverId;
+            this.attributes = attributes;
         }
-    }
-
-    private interface HttpClientProvider {
 
-        HttpClient getHttpClient();
-    }
-
-    private class CloseableHttpClientProvider implements HttpClientProvider {
         @Override
-        public HttpClient getHttpClient() {
-            return zoneChefHttpClient;
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AdminClientKey that = (AdminClientKey) o;
+            return contextType == that.contextType
+                    && Objects.equals(serverId, that.serverId)
+                    && Objects.equals(attributes, that.attributes);
         }
-    }
 
-    private class ProjectCloseableHttpClientProvider implements HttpClientProvider {
         @Override
-        public HttpClient getHttpClient() {
-            return SyncedLazyInitializers.getLazyInitializedObject(
-                    () -> lock,
-                    () -> projectChefHttpClient,
-                    () -> {
-                        projectChefHttpClient = clientFactory.getCountedHttpClient("project-paas-chef");
-                        return projectChefHttpClient;
-                    }
-            );
-        }
-    }
-
-    private class HttpClientWithAttributesProvider implements HttpClientProvider {
-
-        private final ChefClientAttributes attributes;
-
-        private HttpClientWithAttributesProvider(ChefClientAttributes attributes) {
-            this.attributes = attributes;
+        public int hashCode() {
+            return Objects.hash(contextType, serverId, attributes);
         }
 
         @Override
-        public HttpClient getHttpClient() {
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setConnectTimeout(attributes.getConnectionTimeout())
-                    .setSocketTimeout(attributes.getSocketTimeout())
-                    .build();
-            HttpClientsCounter.incrementCounter("admin-custom-chef-client");
-            return clientFactory.getHttpClient(requestConfig);
+        public String toString() {
+            return serverId + " (connectionTimeout=" + attributes.getConnectionTimeout()
+                    + ", socketTimeout=" + attributes.getSocketTimeout() + ")";
         }
     }
 }
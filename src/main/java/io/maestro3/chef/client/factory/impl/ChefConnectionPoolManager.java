@@ -0,0 +1,318 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.http.client.HttpClientsCounter;
+import io.maestro3.chef.client.http.client.ICloseableHttpClientFactory;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClient;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClientImpl;
+import io.maestro3.chef.model.ChefConnectionSettings;
+import io.maestro3.sdk.internal.util.Assert;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a separate pooled http client per chef server, so failures and connection flushes on one server never
+ * affect warm connections to other servers. Pool parameters come from {@link ChefConnectionSettings} of the server
+ * with application-wide defaults for missing values. TLS trust material and proxy are taken from
+ * {@link ICloseableHttpClientFactory}, like for every other http client of the application.
+ * <p>
+ * Every server also gets its own non-blocking client with the same trust material, proxy and connect timeout, so
+ * asynchronous requests reach the server exactly like blocking ones. Non-blocking clients of all servers share one
+ * small executor.
+ * <p>
+ * When uri or connection settings of a server change, both clients are rebuilt. The replaced pool is closed once
+ * requests still running on it had time to complete.
+ */
+@Component
+public class ChefConnectionPoolManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChefConnectionPoolManager.class);
+
+    @Value("${chef.client.pool.max.connections:20}")
+    private int defaultMaxConnections;
+    @Value("${chef.client.pool.keep.alive.seconds:60}")
+    private int defaultKeepAliveSeconds;
+    @Value("${chef.client.pool.idle.timeout.seconds:30}")
+    private int defaultIdleTimeoutSeconds;
+    @Value("${chef.client.pool.validate.after.inactivity.millis:2000}")
+    private int defaultValidateAfterInactivityMillis;
+    @Value("${chef.client.pool.connect.timeout.millis:30000}")
+    private int defaultConnectTimeoutMillis;
+    @Value("${chef.client.pool.socket.timeout.millis:120000}")
+    private int defaultSocketTimeoutMillis;
+    @Value("${chef.client.async.threads:4}")
+    private int asyncThreads;
+    @Value("${chef.client.async.request.timeout.seconds:120}")
+    private int asyncRequestTimeoutSeconds;
+
+    @Autowired
+    private ICloseableHttpClientFactory httpClientFactory;
+
+    private final Map<String, ServerPool> pools = new ConcurrentHashMap<>();
+    private ExecutorService asyncExecutor;
+
+    @PostConstruct
+    public void init() {
+        asyncExecutor = Executors.newFixedThreadPool(asyncThreads, new ThreadFactoryBuilder()
+                .setNameFormat("chef-async-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * @return pooled http client dedicated to the server of the given context, created on first call and rebuilt
+     * when uri or connection settings of the server change
+     */
+    public CloseableHttpClient getHttpClient(IChefContext context) {
+        return getPool(context).client;
+    }
+
+    /**
+     * @return non-blocking client of the server of the given context, rebuilt together with its pooled http client
+     */
+    public SimpleAsyncHttpClient getAsyncHttpClient(IChefContext context) {
+        return getPool(context).asyncClient;
+    }
+
+    /**
+     * @return default request config of the pooled http client of the server, e.g. to derive per-request timeouts
+     */
+    public RequestConfig getRequestConfig(IChefContext context) {
+        return getPool(context).config.requestConfig;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (Map.Entry<String, ServerPool> entry : pools.entrySet()) {
+            close(entry.getKey(), entry.getValue());
+        }
+        pools.clear();
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+    }
+
+    private ServerPool getPool(IChefContext context) {
+        Assert.notNull(context, "context cannot be null.");
+        Assert.hasText(context.getServerId(), "context server id cannot be null or empty.");
+        Assert.hasText(context.getUri(), "context uri cannot be null or empty.");
+
+        PoolConfig config = poolConfigOf(context.getUri(), context.getConnectionSettings());
+        ServerPool pool = pools.get(context.getServerId());
+        if (pool != null && pool.config.equals(config)) {
+            return pool;
+        }
+        return pools.compute(context.getServerId(), (serverId, current) -> {
+            if (current != null && current.config.equals(config)) {
+                return current;
+            }
+            if (current != null) {
+                LOG.info("Connection settings of chef server {} changed, rebuilding its connection pool.", serverId);
+                retire(serverId, current);
+            }
+            return createPool(config);
+        });
+    }
+
+    private PoolConfig poolConfigOf(String uri, ChefConnectionSettings settings) {
+        ChefConnectionSettings effective = settings != null ? settings : new ChefConnectionSettings();
+        int connectTimeoutMillis = valueOrDefault(effective.getConnectTimeoutMillis(), defaultConnectTimeoutMillis);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout(valueOrDefault(effective.getSocketTimeoutMillis(), defaultSocketTimeoutMillis))
+                .build();
+        return new PoolConfig(uri,
+                valueOrDefault(effective.getMaxConnections(), defaultMaxConnections),
+                TimeUnit.SECONDS.toMillis(valueOrDefault(effective.getKeepAliveSeconds(), defaultKeepAliveSeconds)),
+                valueOrDefault(effective.getIdleTimeoutSeconds(), defaultIdleTimeoutSeconds),
+                valueOrDefault(effective.getValidateAfterInactivityMillis(), defaultValidateAfterInactivityMillis),
+                requestConfig);
+    }
+
+    private ServerPool createPool(PoolConfig config) {
+        SSLContext sslContext = httpClientFactory.getSslContext();
+        HttpHost proxy = httpClientFactory.getProxy();
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext))
+                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+        // all requests of this client go to a single chef server, so route and total limits are the same
+        connectionManager.setMaxTotal(config.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(config.maxConnections);
+        connectionManager.setValidateAfterInactivity(config.validateAfterInactivityMillis);
+
+        long keepAliveMillis = config.keepAliveMillis;
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return announced > 0 ? Math.min(announced, keepAliveMillis) : keepAliveMillis;
+        };
+
+        LOG.info("Creating connection pool for chef server {}: maxConnections={}, keepAliveMillis={}, idleTimeoutSeconds={}",
+                config.uri, config.maxConnections, config.keepAliveMillis, config.idleTimeoutSeconds);
+        HttpClientsCounter.incrementCounter("pooled-chef");
+        HttpClientBuilder builder = HttpClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setDefaultRequestConfig(config.requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(config.idleTimeoutSeconds, TimeUnit.SECONDS);
+        if (proxy != null) {
+            builder.setProxy(proxy);
+        }
+        return new ServerPool(config, builder.build(), createAsyncClient(config, sslContext, proxy));
+    }
+
+    private SimpleAsyncHttpClient createAsyncClient(PoolConfig config, SSLContext sslContext, HttpHost proxy) {
+        java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(config.requestConfig.getConnectTimeout()))
+                .sslContext(sslContext)
+                .executor(asyncExecutor);
+        if (proxy != null) {
+            // without a proxy the default selector applies, as system properties apply to the pooled client
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxy.getHostName(), proxyPort(proxy))));
+        }
+        HttpClientsCounter.incrementCounter("async-chef");
+        return new SimpleAsyncHttpClientImpl(builder.build(), Duration.ofSeconds(asyncRequestTimeoutSeconds));
+    }
+
+    private static int proxyPort(HttpHost proxy) {
+        if (proxy.getPort() > 0) {
+            return proxy.getPort();
+        }
+        return "https".equalsIgnoreCase(proxy.getSchemeName()) ? 443 : 80;
+    }
+
+    /**
+     * Replaced pool is closed after its socket timeout, chef clients holding it are replaced meanwhile.
+     */
+    private void retire(String serverId, ServerPool pool) {
+        long socketTimeoutMillis = Math.max(0, pool.config.requestConfig.getSocketTimeout());
+        CompletableFuture.runAsync(() -> close(serverId, pool),
+                CompletableFuture.delayedExecutor(socketTimeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private static void close(String serverId, ServerPool pool) {
+        try {
+            pool.client.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close http client of chef server " + serverId, e);
+        }
+    }
+
+    private static int valueOrDefault(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    private static final class ServerPool {
+
+        private final PoolConfig config;
+        private final CloseableHttpClient client;
+        // JDK client has no close method, its resources are released once it is no longer referenced
+        private final SimpleAsyncHttpClient asyncClient;
+
+        private ServerPool(PoolConfig config, CloseableHttpClient client, SimpleAsyncHttpClient asyncClient) {
+            this.config = config;
+            this.client = client;
+            this.asyncClient = asyncClient;
+        }
+    }
+
+    /**
+     * Effective parameters of a pool, defaults applied, so only changes which matter rebuild the pool.
+     */
+    private static final class PoolConfig {
+
+        private final String uri;
+        private final int maxConnections;
+        private final long keepAliveMillis;
+        private final int idleTimeoutSeconds;
+        private final int validateAfterInactivityMillis;
+        private final RequestConfig requestConfig;
+
+        private PoolConfig(String uri, int maxConnections, long keepAliveMillis, int idleTimeoutSeconds,
+                           int validateAfterInactivityMillis, RequestConfig requestConfig) {
+            this.uri = uri;
+            this.maxConnections = maxConnections;
+            this.keepAliveMillis = keepAliveMillis;
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+            this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+            this.requestConfig = requestConfig;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PoolConfig that = (PoolConfig) o;
+            return maxConnections == that.maxConnections
+                    && keepAliveMillis == that.keepAliveMillis
+                    && idleTimeoutSeconds == that.idleTimeoutSeconds
+                    && validateAfterInactivityMillis == that.validateAfterInactivityMillis
+                    && requestConfig.getConnectTimeout() == that.requestConfig.getConnectTimeout()
+                    && requestConfig.getSocketTimeout() == that.requestConfig.getSocketTimeout()
+                    && uri.equals(that.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, maxConnections, keepAliveMillis, idleTimeoutSeconds, validateAfterInactivityMillis,
+                    requestConfig.getConnectTimeout(), requestConfig.getSocketTimeout());
+        }
+    }
+}
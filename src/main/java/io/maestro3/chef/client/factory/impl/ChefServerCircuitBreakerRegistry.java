@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.maestro3.chef.client.http.client.CircuitBreaker;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import io.maestro3.sdk.internal.util.Assert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one circuit breaker per chef server, shared by zone, project and admin clients of the server, so callers of a
+ * server which is down fail fast instead of waiting out connect and socket timeouts.
+ */
+@Component
+public class ChefServerCircuitBreakerRegistry {
+
+    @Value("${chef.client.breaker.enabled:true}")
+    private boolean enabled;
+    @Value("${chef.client.breaker.window.size:50}")
+    private int windowSize;
+    @Value("${chef.client.breaker.minimum.calls:10}")
+    private int minimumCalls;
+    @Value("${chef.client.breaker.failure.rate.threshold:50}")
+    private int failureRateThreshold;
+    @Value("${chef.client.breaker.slow.call.rate.threshold:80}")
+    private int slowCallRateThreshold;
+    @Value("${chef.client.breaker.slow.call.duration.millis:30000}")
+    private long slowCallDurationMillis;
+    @Value("${chef.client.breaker.open.duration.millis:30000}")
+    private long openDurationMillis;
+
+    @Autowired
+    private ChefClientMetrics metrics;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @return circuit breaker of the server, null if circuit breaking is disabled
+     */
+    public CircuitBreaker getCircuitBreaker(String serverId) {
+        Assert.hasText(serverId, "serverId cannot be null or empty.");
+        if (!enabled) {
+            return null;
+        }
+        return breakers.computeIfAbsent(serverId, this::createCircuitBreaker);
+    }
+
+    private CircuitBreaker createCircuitBreaker(String serverId) {
+        CircuitBreaker breaker = new CircuitBreaker(serverId, windowSize, minimumCalls, failureRateThreshold,
+                slowCallRateThreshold, slowCallDurationMillis, openDurationMillis);
+        MetricRegistry registry = metrics.getRegistry();
+        // 0 - closed, 1 - open, 2 - half-open
+        registry.register(MetricRegistry.name(ChefClientMetrics.CIRCUIT_BREAKER, serverId, "state"), (Gauge<Integer>) () -> breaker.getState().ordinal());
+        registry.register(MetricRegistry.name(ChefClientMetrics.CIRCUIT_BREAKER, serverId, "failureRate"), (Gauge<Integer>) breaker::getFailureRate);
+        registry.register(MetricRegistry.name(ChefClientMetrics.CIRCUIT_BREAKER, serverId, "slowCallRate"), (Gauge<Integer>) breaker::getSlowCallRate);
+        registry.register(MetricRegistry.name(ChefClientMetrics.CIRCUIT_BREAKER, serverId, "rejected"), (Gauge<Long>) breaker::getRejected);
+        return breaker;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.maestro3.chef.client.http.client.RequestHedger;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import io.maestro3.sdk.internal.util.Assert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one request hedger per chef server, shared by zone, project and admin clients of the server, so response times
+ * of all GET requests to the server drive the hedge delay and hedges of all clients share one budget.
+ * Blocking attempts of hedged commands of the server run on its own bounded pool: the server can't take more
+ * concurrent requests than the maximal limit of its limiter anyway, so the pool is not allowed to grow beyond it.
+ */
+@Component
+public class ChefServerHedgerRegistry {
+
+    @Value("${chef.client.hedging.enabled:false}")
+    private boolean enabled;
+    @Value("${chef.client.hedging.percentile:95}")
+    private int percentile;
+    @Value("${chef.client.hedging.min.delay.millis:50}")
+    private long minDelayMillis;
+    @Value("${chef.client.hedging.initial.delay.millis:1000}")
+    private long initialDelayMillis;
+    @Value("${chef.client.hedging.budget.percent:5}")
+    private int budgetPercent;
+    @Value("${chef.client.hedging.window.size:1024}")
+    private int windowSize;
+    @Value("${chef.client.hedging.threads:${chef.client.limiter.max:64}}")
+    private int threads;
+
+    @Autowired
+    private ChefClientMetrics metrics;
+
+    private final Map<String, RequestHedger> hedgers = new ConcurrentHashMap<>();
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * @return request hedger of the server, null if hedging is disabled
+     */
+    public RequestHedger getHedger(String serverId) {
+        Assert.hasText(serverId, "serverId cannot be null or empty.");
+        if (!enabled) {
+            return null;
+        }
+        return hedgers.computeIfAbsent(serverId, this::createHedger);
+    }
+
+    /**
+     * @return bounded executor of blocking attempts of hedged commands of the server, which rejects attempts when all
+     * its threads are busy; null if hedging is disabled
+     */
+    public Executor getExecutor(String serverId) {
+        Assert.hasText(serverId, "serverId cannot be null or empty.");
+        if (!enabled) {
+            return null;
+        }
+        return executors.computeIfAbsent(serverId, this::createExecutor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    private ThreadPoolExecutor createExecutor(String serverId) {
+        // no queue: an attempt waiting for a thread would only delay the request, the caller sends it itself instead
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("chef-hedge-" + serverId + "-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private RequestHedger createHedger(String serverId) {
+        RequestHedger hedger = new RequestHedger(serverId, percentile, minDelayMillis, initialDelayMillis, budgetPercent, windowSize);
+        MetricRegistry registry = metrics.getRegistry();
+        registry.register(MetricRegistry.name(ChefClientMetrics.HEDGING, serverId, "delay"), (Gauge<Long>) hedger::getDelayMillis);
+        registry.register(MetricRegistry.name(ChefClientMetrics.HEDGING, serverId, "hedges"), (Gauge<Long>) hedger::getHedges);
+        registry.register(MetricRegistry.name(ChefClientMetrics.HEDGING, serverId, "won"), (Gauge<Long>) hedger::getHedgesWon);
+        return hedger;
+    }
+}
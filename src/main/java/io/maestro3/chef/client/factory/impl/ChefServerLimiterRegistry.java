@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.maestro3.chef.client.http.client.AdaptiveConcurrencyLimiter;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import io.maestro3.sdk.internal.util.Assert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one adaptive concurrency limiter per chef server, shared by zone, project and admin clients of the server,
+ * so the total load put on a server is limited no matter which client sends it.
+ */
+@Component
+public class ChefServerLimiterRegistry {
+
+    @Value("${chef.client.limiter.enabled:true}")
+    private boolean enabled;
+    @Value("${chef.client.limiter.initial:16}")
+    private int initialLimit;
+    @Value("${chef.client.limiter.min:2}")
+    private int minLimit;
+    @Value("${chef.client.limiter.max:64}")
+    private int maxLimit;
+    @Value("${chef.client.limiter.backoff.ratio:0.9}")
+    private double backoffRatio;
+    @Value("${chef.client.limiter.rtt.tolerance:2.0}")
+    private double rttTolerance;
+    @Value("${chef.client.limiter.queue.size:256}")
+    private int maxQueued;
+    @Value("${chef.client.limiter.queue.timeout.millis:5000}")
+    private long queueTimeoutMillis;
+
+    @Autowired
+    private ChefClientMetrics metrics;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @return limiter of the server, null if limiting is disabled
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String serverId) {
+        Assert.hasText(serverId, "serverId cannot be null or empty.");
+        if (!enabled) {
+            return null;
+        }
+        return limiters.computeIfAbsent(serverId, this::createLimiter);
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(String serverId) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(serverId, initialLimit, minLimit, maxLimit,
+                backoffRatio, rttTolerance, maxQueued, queueTimeoutMillis);
+        MetricRegistry registry = metrics.getRegistry();
+        registry.register(MetricRegistry.name(ChefClientMetrics.LIMITER, serverId, "limit"), (Gauge<Integer>) limiter::getLimit);
+        registry.register(MetricRegistry.name(ChefClientMetrics.LIMITER, serverId, "inFlight"), (Gauge<Integer>) limiter::getInFlight);
+        registry.register(MetricRegistry.name(ChefClientMetrics.LIMITER, serverId, "queued"), (Gauge<Integer>) limiter::getQueued);
+        registry.register(MetricRegistry.name(ChefClientMetrics.LIMITER, serverId, "rejected"), (Gauge<Long>) limiter::getRejected);
+        return limiter;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.maestro3.chef.client.http.client.RetryBudget;
+import io.maestro3.chef.client.http.client.RetryPolicy;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import io.maestro3.sdk.internal.util.Assert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one retry budget per chef server, shared by zone, project and admin clients of the server, so retries of all
+ * clients together stay within the budget.
+ */
+@Component
+public class ChefServerRetryBudgetRegistry {
+
+    @Value("${chef.client.retry.enabled:true}")
+    private boolean enabled;
+    @Value("${chef.client.retry.max.attempts:3}")
+    private int maxAttempts;
+    @Value("${chef.client.retry.base.delay.millis:200}")
+    private long baseDelayMillis;
+    @Value("${chef.client.retry.max.delay.millis:5000}")
+    private long maxDelayMillis;
+    @Value("${chef.client.retry.budget.ratio:0.2}")
+    private double retryRatio;
+    @Value("${chef.client.retry.budget.max.tokens:20}")
+    private int maxTokens;
+
+    @Autowired
+    private ChefClientMetrics metrics;
+
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * @return retry budget of the server, null if retries are disabled
+     */
+    public RetryBudget getRetryBudget(String serverId) {
+        Assert.hasText(serverId, "serverId cannot be null or empty.");
+        if (!enabled) {
+            return null;
+        }
+        return budgets.computeIfAbsent(serverId, this::createRetryBudget);
+    }
+
+    private RetryBudget createRetryBudget(String serverId) {
+        RetryBudget budget = new RetryBudget(serverId, new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis),
+                retryRatio, maxTokens);
+        MetricRegistry registry = metrics.getRegistry();
+        registry.register(MetricRegistry.name(ChefClientMetrics.RETRIES, serverId, "attempts"), (Gauge<Long>) budget::getRetries);
+        registry.register(MetricRegistry.name(ChefClientMetrics.RETRIES, serverId, "denied"), (Gauge<Long>) budget::getDenied);
+        registry.register(MetricRegistry.name(ChefClientMetrics.RETRIES, serverId, "tokens"), (Gauge<Double>) budget::getTokens);
+        return budget;
+    }
+}
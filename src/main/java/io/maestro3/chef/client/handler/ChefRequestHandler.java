@@ -22,22 +22,18 @@ import io.maestro3.chef.client.context.IChefContext;
 import io.maestro3.chef.client.http.client.RequestMethod;
 import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
 import io.maestro3.chef.client.http.client.handler.RequestHandler;
+import io.maestro3.chef.client.serialization.ChefRequestEntity;
 import io.maestro3.chef.client.utils.ChefUtils;
 import io.maestro3.chef.model.ChefVersion;
-import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringWriter;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TimeZone;
 
 public class ChefRequestHandler implements RequestHandler {
     public static final String CONTENT_TYPE = "application/json";
@@ -45,18 +41,13 @@ public class ChefRequestHandler implements RequestHandler {
     private static final String SIGN_HEADER_VALUE = "version=1.0";
     private static final String API_VERSION_HEADER_VALUE = "1";
     private static final String ACCEPT_ENCODING_HEADER_VALUE = "gzip;q=1.0,deflate;q=0.6,identity;q=0.3";
-    private static final String TIMESTAMP_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
-    private static final String TIMESTAMP_ZONE = "UTC";
-
-    private static final DateFormat TIMESTAMP_FORMATTER;
 
     private static final String URL_SEPARATOR = "/";
 
+    private static final String EMPTY_CONTENT_HASH = ChefUtils.encodeHash(ChefUtils.createHashDigest().digest());
+
     private static final Map<String, String> CHEF_VERSION_MAPPING;
     static {
-        TIMESTAMP_FORMATTER = new SimpleDateFormat(TIMESTAMP_DATE_FORMAT);
-        TIMESTAMP_FORMATTER.setTimeZone(TimeZone.getTimeZone(TIMESTAMP_ZONE));
-
         CHEF_VERSION_MAPPING = new HashMap<>();
         CHEF_VERSION_MAPPING.put("11", "11.4.0");
         CHEF_VERSION_MAPPING.put("12", "12.7.2");
@@ -65,10 +56,19 @@ public class ChefRequestHandler implements RequestHandler {
 
     private IChefContext context;
     private IChefCommand command;
+    private ChefRequestSigner signer;
 
     public ChefRequestHandler(IChefContext context, IChefCommand command) {
+        this(context, command, new ChefRequestSigner(context.getAuthenticationKey()));
+    }
+
+    /**
+     * @param signer signer of the context key, should be shared by all requests of the context
+     */
+    public ChefRequestHandler(IChefContext context, IChefCommand command, ChefRequestSigner signer) {
         this.context = context;
         this.command = command;
+        this.signer = signer;
     }
 
     @Override
@@ -80,36 +80,17 @@ public class ChefRequestHandler implements RequestHandler {
             resource = context.getOrganizationResourcePrefix() + resource;
         }
 
-        String body = "";
-        if (command.getMethod() == RequestMethod.POST || command.getMethod() == RequestMethod.PUT) {
-            try {
-                InputStream stream = ((HttpEntityEnclosingRequest) request).getEntity().getContent();
-                StringWriter writer = new StringWriter();
-                IOUtils.copy(stream, writer);
-                body = writer.toString();
-            } catch (IOException e) {
-                throw new SimpleHttpClientException("Can't read request body", e);
-            }
-        }
-
-        String hashedPath;
-        String hashedBody;
-        try {
-            hashedPath = ChefUtils.getHash(URL_SEPARATOR + resource);
-            hashedBody = ChefUtils.getHash(body);
-        } catch (Exception e) {
-            throw new SimpleHttpClientException(e);
-        }
+        String hashedBody = getContentHash(request);
+        String hashedPath = signer.hash(URL_SEPARATOR + resource);
 
-        String timestamp = getTimestamp();
+        String timestamp = signer.getTimestamp();
         String authenticationString = buildAuthenticationString(hashedPath, hashedBody, timestamp, username);
-        String signedAuthenticationString;
+        String[] authenticationHeaders;
         try {
-            signedAuthenticationString = ChefUtils.signAuthenticationString(authenticationString, context.getAuthenticationKey());
+            authenticationHeaders = signer.sign(authenticationString);
         } catch (Exception e) {
             throw new SimpleHttpClientException(e);
         }
-        String[] authenticationHeaders = ChefUtils.splitHeaders(signedAuthenticationString);
         String chefVersion = CHEF_VERSION_MAPPING.get(context.getChefVersion());
 
         request.addHeader(ChefRequestHeader.HEADER_CONTENT_TYPE, CONTENT_TYPE);
@@ -127,6 +108,25 @@ public class ChefRequestHandler implements RequestHandler {
         }
     }
 
+    private String getContentHash(HttpRequest request) throws SimpleHttpClientException {
+        if (command.getMethod() != RequestMethod.POST && command.getMethod() != RequestMethod.PUT) {
+            return EMPTY_CONTENT_HASH;
+        }
+        HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+        if (entity == null) {
+            return EMPTY_CONTENT_HASH;
+        }
+        if (entity instanceof ChefRequestEntity) {
+            // computed by serializer while writing the body
+            return ((ChefRequestEntity) entity).getContentHash();
+        }
+        try {
+            return ChefUtils.encodeHash(ChefUtils.getHashDigest().digest(EntityUtils.toByteArray(entity)));
+        } catch (IOException e) {
+            throw new SimpleHttpClientException("Can't read request body", e);
+        }
+    }
+
     private String buildAuthenticationString(String hashedPath, String hashedBody, String timestamp, String username) {
         String methodName = command.getMethod().name();
 
@@ -139,10 +139,6 @@ public class ChefRequestHandler implements RequestHandler {
         return builder.toString();
     }
 
-    private synchronized String getTimestamp() {
-        return TIMESTAMP_FORMATTER.format(new Date());
-    }
-
     public interface ChefRequestHeader {
         String HEADER_ACCEPT = "Accept";
         String HEADER_AUTHORIZATION = "X-Ops-Authorization-";
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.handler;
+
+import io.maestro3.chef.client.exception.RsaEncryptionException;
+import io.maestro3.chef.client.utils.ChefUtils;
+import io.maestro3.sdk.internal.util.Assert;
+import org.bouncycastle.util.encoders.Base64;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Produces values of chef X-Ops authentication headers for a single private key, so one instance is kept per chef
+ * context. Signatures are initialized with the key once per thread and reused, the security provider is resolved
+ * once, and the timestamp is formatted at most once a second for the whole application.
+ */
+public class ChefRequestSigner {
+
+    private static final String SIGNATURE_ALGORITHM = "RSA";
+    private static final int HEADER_LENGTH = 60;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final AtomicReference<Timestamp> TIMESTAMP = new AtomicReference<>(new Timestamp(-1, null));
+
+    private static volatile Provider signatureProvider;
+
+    private final PrivateKey privateKey;
+    private final ThreadLocal<Signature> signatures = new ThreadLocal<>();
+
+    public ChefRequestSigner(Key authenticationKey) {
+        Assert.notNull(authenticationKey, "authenticationKey cannot be null.");
+        if (!(authenticationKey instanceof PrivateKey)) {
+            throw new IllegalArgumentException("Chef authentication key must be a private key.");
+        }
+        this.privateKey = (PrivateKey) authenticationKey;
+    }
+
+    /**
+     * @return current time in the format of X-Ops-Timestamp header
+     */
+    public String getTimestamp() {
+        long epochSecond = System.currentTimeMillis() / 1000;
+        Timestamp cached = TIMESTAMP.get();
+        if (cached.epochSecond == epochSecond) {
+            return cached.value;
+        }
+        // concurrent threads may format the same second twice, which is cheaper than coordinating them
+        Timestamp current = new Timestamp(epochSecond, TIMESTAMP_FORMATTER.format(Instant.ofEpochSecond(epochSecond)));
+        TIMESTAMP.set(current);
+        return current.value;
+    }
+
+    /**
+     * @return base64 encoded hash of the value, as used for the hashed path
+     */
+    public String hash(String value) {
+        return ChefUtils.encodeHash(ChefUtils.getHashDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Signs authentication string and splits base64 encoded signature into X-Ops-Authorization-N header values.
+     *
+     * @param authenticationString canonical request representation
+     * @return header values in order, starting from X-Ops-Authorization-1
+     * @throws RsaEncryptionException when signing fails
+     */
+    public String[] sign(String authenticationString) throws RsaEncryptionException {
+        byte[] encoded = Base64.encode(signBytes(authenticationString.getBytes(StandardCharsets.UTF_8)));
+
+        int count = (encoded.length + HEADER_LENGTH - 1) / HEADER_LENGTH;
+        String[] headers = new String[count];
+        for (int index = 0; index < count; index++) {
+            int offset = index * HEADER_LENGTH;
+            headers[index] = new String(encoded, offset, Math.min(HEADER_LENGTH, encoded.length - offset), StandardCharsets.US_ASCII);
+        }
+        return headers;
+    }
+
+    private byte[] signBytes(byte[] data) throws RsaEncryptionException {
+        try {
+            Signature signature = getSignature();
+            try {
+                signature.update(data);
+                // sign() resets the signature to the state right after initSign, so it can be reused
+                return signature.sign();
+            } catch (GeneralSecurityException | RuntimeException e) {
+                signatures.remove();
+                throw e;
+            }
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new RsaEncryptionException("Failed to sign message.", e);
+        }
+    }
+
+    private Signature getSignature() throws GeneralSecurityException {
+        Signature signature = signatures.get();
+        if (signature == null) {
+            signature = newSignature();
+            signature.initSign(privateKey);
+            signatures.set(signature);
+        }
+        return signature;
+    }
+
+    private static Signature newSignature() throws GeneralSecurityException {
+        Provider provider = signatureProvider;
+        if (provider != null) {
+            return Signature.getInstance(SIGNATURE_ALGORITHM, provider);
+        }
+        // resolved lazily, as the provider may be registered after this class is loaded
+        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+        signatureProvider = signature.getProvider();
+        return signature;
+    }
+
+    private static final class Timestamp {
+        private final long epochSecond;
+        private final String value;
+
+        private Timestamp(long epochSecond, String value) {
+            this.epochSecond = epochSecond;
+            this.value = value;
+        }
+    }
+}
@@ -19,30 +19,25 @@ package io.maestro3.chef.client.handler;
 
 import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
 import io.maestro3.chef.client.http.client.handler.ResponseHandler;
+import io.maestro3.chef.client.response.impl.BasicChefResponse;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 
+/**
+ * Writes status code, description and error flag of the http response into the chef response of a single command
+ * execution. A new handler must be created for every request, so concurrent executions never share response state.
+ */
 public class ChefResponseHandler implements ResponseHandler {
-    private Integer lastResponseCode;
-    private String lastResponseDescription;
-    private Boolean lastResponseError;
-
-    public Integer getLastResponseCode() {
-        return lastResponseCode;
-    }
-
-    public String getLastResponseDescription() {
-        return lastResponseDescription;
-    }
+    private final BasicChefResponse<?> chefResponse;
 
-    public Boolean getLastResponseError() {
-        return lastResponseError;
+    public ChefResponseHandler(BasicChefResponse<?> chefResponse) {
+        this.chefResponse = chefResponse;
     }
 
     public void process(HttpResponse response) throws SimpleHttpClientException {
         int code = response.getStatusLine().getStatusCode();
-        lastResponseCode = code;
+        chefResponse.setCode(code);
         switch (code) {
             case HttpStatus.SC_OK:
                 // fall through
@@ -77,7 +72,7 @@ public class ChefResponseHandler implements ResponseHandler {
     }
 
     private void updateResponseState(String description, boolean errorOccurred) {
-        this.lastResponseDescription = description;
-        this.lastResponseError = errorOccurred;
+        chefResponse.setDescription(description);
+        chefResponse.setErrorOccurred(errorOccurred);
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.apache.http.concurrent.Cancellable;
+
+/**
+ * Aborts a request from another thread, e.g. when its response is no longer needed. The transport registers how to abort
+ * the request when it sends it, a request aborted before that is aborted as soon as it is sent. Aborted request fails
+ * with {@link io.maestro3.chef.client.http.client.exception.SimpleHttpClientException}.
+ */
+public class AbortSignal {
+
+    // guarded by this
+    private Cancellable cancellable;
+    private boolean aborted;
+
+    public void abort() {
+        Cancellable toCancel;
+        synchronized (this) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            toCancel = cancellable;
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Called by the transport when the request is sent.
+     */
+    void onSend(Cancellable sent) {
+        synchronized (this) {
+            if (!aborted) {
+                cancellable = sent;
+                return;
+            }
+        }
+        sent.cancel();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits concurrent requests to a single server with a limit adjusted by AIMD: the limit grows by about one per round
+ * trip while the limit is used and the server answers within tolerance of its best observed round trip time, and is
+ * multiplied by backoff ratio when the server returns errors or times out. Slow answers only stop the growth, because
+ * round trip times of different chef commands differ too much to treat a slow one as overload.
+ * Callers above the limit wait in a bounded queue, callers above the queue size or waiting longer than the queue
+ * timeout are rejected.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // minimal round trip time is forgotten periodically, so the baseline follows long term changes of the server
+    private static final int RTT_WINDOW_SAMPLES = 500;
+
+    public enum Outcome {
+        /** request completed, its round trip time is a valid sample */
+        SUCCESS,
+        /** server failed or timed out, limit is decreased */
+        DROPPED,
+        /** request failed on client side, limit is not changed */
+        IGNORED
+    }
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+
+    // guarded by this
+    private double limit;
+    private int inFlight;
+    private long rejected;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int rttSamples;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double rttTolerance, int maxQueued, long queueTimeoutMillis) {
+        Assert.isTrue(minLimit > 0 && minLimit <= maxLimit, "minLimit must be positive and not greater than maxLimit.");
+        Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be between 0 and 1.");
+        Assert.isTrue(rttTolerance >= 1, "rttTolerance must not be less than 1.");
+        Assert.isTrue(maxQueued >= 0, "maxQueued must not be negative.");
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return future completed with a permit when the request may start, or failed with
+     * {@link RejectedExecutionException} immediately if the queue is full
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        synchronized (this) {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (waiters.size() >= maxQueued) {
+                rejected++;
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many requests to " + name + ": limit=" + (int) limit + ", queued=" + waiters.size()));
+            }
+            CompletableFuture<Permit> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    /**
+     * Blocks the caller while the request is queued, at most for the queue timeout.
+     *
+     * @throws RejectedExecutionException if the queue is full or the permit was not granted in time
+     */
+    public Permit acquire() {
+        return acquire(queueTimeoutMillis);
+    }
+
+    /**
+     * Blocks the caller while the request is queued, at most for the queue timeout or the given time if it is shorter.
+     *
+     * @throws RejectedExecutionException if the queue is full or the permit was not granted in time
+     */
+    public Permit acquire(long maxWaitMillis) {
+        CompletableFuture<Permit> waiter = acquireAsync();
+        try {
+            return waiter.get(Math.min(queueTimeoutMillis, maxWaitMillis), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw (RejectedExecutionException) e.getCause();
+        } catch (TimeoutException e) {
+            return abandon(waiter, "Timed out waiting for a request slot of " + name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(waiter, "Interrupted waiting for a request slot of " + name);
+        }
+    }
+
+    /**
+     * Returns the permit and adjusts the limit by the outcome of the request. Repeated release of a permit is ignored.
+     */
+    public void release(Permit permit, Outcome outcome) {
+        if (permit == null || !permit.released.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long rttNanos = now - permit.startNanos;
+        List<CompletableFuture<Permit>> granted;
+        synchronized (this) {
+            inFlight--;
+            if (outcome == Outcome.DROPPED) {
+                decrease(now, rttNanos);
+            } else if (outcome == Outcome.SUCCESS) {
+                if (++rttSamples > RTT_WINDOW_SAMPLES) {
+                    rttSamples = 0;
+                    minRttNanos = rttNanos;
+                }
+                minRttNanos = Math.min(minRttNanos, rttNanos);
+                if (rttNanos <= minRttNanos * rttTolerance && (inFlight + 1) * 2 >= limit) {
+                    // additive increase: about one more slot per round trip while the limit is actually used
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // one multiplicative decrease per round trip, a burst of failures of concurrent requests is a single congestion event
+    private void decrease(long now, long rttNanos) {
+        // nanoTime has an arbitrary origin, so there is no initial value of lastDecreaseNanos which is surely in the past
+        if (!decreased || now - lastDecreaseNanos >= rttNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            lastDecreaseNanos = now;
+            decreased = true;
+        }
+    }
+
+    private List<CompletableFuture<Permit>> grant() {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            inFlight++;
+            granted.add(waiters.poll());
+        }
+        return granted;
+    }
+
+    private void complete(List<CompletableFuture<Permit>> granted) {
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit permit = new Permit();
+            if (!waiter.complete(permit)) {
+                // waiter gave up in the meantime, pass the slot on
+                release(permit, Outcome.IGNORED);
+            }
+        }
+    }
+
+    private Permit abandon(CompletableFuture<Permit> waiter, String message) {
+        synchronized (this) {
+            waiters.remove(waiter);
+            if (waiter.cancel(false)) {
+                rejected++;
+                throw new RejectedExecutionException(message);
+            }
+        }
+        // permit was granted concurrently with the timeout
+        return waiter.join();
+    }
+
+    /**
+     * Right to run one request, must be released exactly once.
+     */
+    public static final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stops requests to a server which fails or answers too slowly. Outcomes of the last calls are kept in a sliding
+ * window; when the failure rate or the slow call rate of the window reaches its threshold the breaker opens and
+ * rejects calls without contacting the server. After the open duration a single probe call is let through: its
+ * success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long openDurationNanos;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int position;
+    private int recordedCalls;
+    private int failedCount;
+    private int slowCount;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long rejected;
+
+    /**
+     * @param failureRateThreshold  percent of failed calls in the window which opens the breaker
+     * @param slowCallRateThreshold percent of calls slower than slow call duration which opens the breaker
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                          long slowCallDurationMillis, long openDurationMillis) {
+        Assert.isTrue(windowSize > 0, "windowSize must be positive.");
+        Assert.isTrue(minimumCalls > 0 && minimumCalls <= windowSize, "minimumCalls must be positive and not greater than windowSize.");
+        Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100, "failureRateThreshold must be between 1 and 100.");
+        Assert.isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100, "slowCallRateThreshold must be between 1 and 100.");
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMillis);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.failedCalls = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * @return permission to call the server, null if the breaker is open or its half-open probe is already running
+     */
+    public synchronized Call tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return new Call(false);
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return new Call(true);
+        }
+        rejected++;
+        return null;
+    }
+
+    /**
+     * Records outcome of the call. Calls which failed on client side say nothing about the server and only give up
+     * their permission. Repeated completion of a call is ignored.
+     *
+     * @param durationNanos time the server took to answer, without time spent waiting for a local request slot
+     */
+    public void complete(Call call, AdaptiveConcurrencyLimiter.Outcome outcome, long durationNanos) {
+        if (call == null || !call.completed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            boolean ignored = outcome == AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+            boolean failed = outcome == AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+            boolean slow = !ignored && durationNanos >= slowCallDurationNanos;
+            if (call.probe) {
+                probeInFlight = false;
+                if (ignored || state != State.HALF_OPEN) {
+                    return;
+                }
+                transitionTo(failed || slow ? State.OPEN : State.CLOSED);
+                return;
+            }
+            if (ignored || state != State.CLOSED) {
+                // late answers of calls started before the breaker opened do not change its state
+                return;
+            }
+            record(failed, slow);
+            if (recordedCalls >= minimumCalls
+                    && (failedCount * 100 >= failureRateThreshold * recordedCalls
+                    || slowCount * 100 >= slowCallRateThreshold * recordedCalls)) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return percent of failed calls in the window, -1 until the window has minimum number of calls
+     */
+    public synchronized int getFailureRate() {
+        return recordedCalls >= minimumCalls ? failedCount * 100 / recordedCalls : -1;
+    }
+
+    /**
+     * @return percent of slow calls in the window, -1 until the window has minimum number of calls
+     */
+    public synchronized int getSlowCallRate() {
+        return recordedCalls >= minimumCalls ? slowCount * 100 / recordedCalls : -1;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return milliseconds left until the open breaker lets a probe call through, 0 if it is not open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openDurationNanos - (System.nanoTime() - openedAtNanos)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (recordedCalls == windowSize) {
+            // window is full, the oldest call leaves it
+            failedCount -= failedCalls[position] ? 1 : 0;
+            slowCount -= slowCalls[position] ? 1 : 0;
+        } else {
+            recordedCalls++;
+        }
+        failedCalls[position] = failed;
+        slowCalls[position] = slow;
+        failedCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        position = (position + 1) % windowSize;
+    }
+
+    private void transitionTo(State newState) {
+        if (newState == State.OPEN) {
+            LOG.warn("Circuit breaker of {} is open for {} ms: failure rate {}%, slow call rate {}%", name,
+                    TimeUnit.NANOSECONDS.toMillis(openDurationNanos), getFailureRate(), getSlowCallRate());
+            openedAtNanos = System.nanoTime();
+        } else if (newState == State.CLOSED) {
+            LOG.info("Circuit breaker of {} is closed", name);
+            resetWindow();
+        }
+        state = newState;
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recordedCalls = 0;
+        failedCount = 0;
+        slowCount = 0;
+    }
+
+    /**
+     * Permission to run one call, must be completed exactly once.
+     */
+    public static final class Call {
+
+        private final boolean probe;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Call(boolean probe) {
+            this.probe = probe;
+        }
+    }
+}
@@ -16,10 +16,13 @@
 
 package io.maestro3.chef.client.http.client;
 
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
 
+import javax.net.ssl.SSLContext;
+
 public interface ICloseableHttpClientFactory {
 
     HttpClient getHttpClient();
@@ -30,4 +33,18 @@ public interface ICloseableHttpClientFactory {
 
     HttpClient getHttpClient(boolean addFakeFactory);
 
+    /**
+     * Chef clients build a connection pool per chef server, so they can't use clients of this factory and take its
+     * trust material from here. Must give the same trust as clients of this factory, e.g. a custom trust store or a
+     * context which trusts any certificate where clients use the fake socket factory.
+     *
+     * @return SSL context of the https connections of clients of this factory
+     */
+    SSLContext getSslContext();
+
+    /**
+     * @return proxy used by clients of this factory, null if requests are sent directly
+     */
+    HttpHost getProxy();
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.springframework.util.Assert;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of concurrently running asynchronous requests. Requests above the limit are queued and started
+ * when one of the running requests completes, so no caller thread is ever blocked waiting for a permit.
+ * Cancellation of a returned future is passed on to the running request, a request cancelled while queued is never
+ * started.
+ */
+public class InFlightRequestLimiter {
+
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    // number of drain requests not yet handled, only the thread which raised it from zero drains the queue
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    public InFlightRequestLimiter(int maxInFlight) {
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be positive.");
+        this.maxInFlight = maxInFlight;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        Assert.notNull(task, "task can't be null.");
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pending.add(() -> start(task, result));
+        drain();
+        return result;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Tasks which complete immediately, e.g. rejected by an open circuit breaker, call drain again from within
+     * the running task. Such nested calls only register more work for the outer loop, so the stack does not grow
+     * with the number of queued tasks.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int requests = 1;
+        do {
+            startPending();
+            requests = drainRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private void startPending() {
+        while (!pending.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable next = pending.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            next.run();
+        }
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> task, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // cancelled while queued, the slot goes to the next pending task
+            inFlight.decrementAndGet();
+            return;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> started = future;
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+        future.whenComplete((value, error) -> {
+            // release permit before completing the caller future, so follow-up requests see the free slot
+            inFlight.decrementAndGet();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+            drain();
+        });
+    }
+}
@@ -22,6 +22,7 @@ import io.maestro3.chef.client.http.client.handler.ResponseHandler;
 import io.maestro3.chef.client.http.client.parameters.TypedNameValue;
 import io.maestro3.chef.client.http.client.serialization.Deserializer;
 import io.maestro3.chef.client.http.client.serialization.Serializer;
+import org.apache.http.client.config.RequestConfig;
 
 import java.lang.reflect.Type;
 import java.util.List;
@@ -41,6 +42,8 @@ public class Request {
     private List<TypedNameValue<String, String>> queryParams;
     private Deserializer deserializer;
     private Serializer serializer;
+    private RequestConfig requestConfig;
+    private AbortSignal abortSignal;
 
     public Request() {
         //json
@@ -125,4 +128,26 @@ public class Request {
     public void setSerializer(Serializer serializer) {
         this.serializer = serializer;
     }
+
+    /**
+     * @return config overriding default config of the http client for this request only, may be null
+     */
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    public void setRequestConfig(RequestConfig requestConfig) {
+        this.requestConfig = requestConfig;
+    }
+
+    /**
+     * @return signal aborting this request when it is no longer needed, may be null
+     */
+    public AbortSignal getAbortSignal() {
+        return abortSignal;
+    }
+
+    public void setAbortSignal(AbortSignal abortSignal) {
+        this.abortSignal = abortSignal;
+    }
 }
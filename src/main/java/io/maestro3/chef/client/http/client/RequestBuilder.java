@@ -22,6 +22,7 @@ import io.maestro3.chef.client.http.client.handler.ResponseHandler;
 import io.maestro3.chef.client.http.client.parameters.TypedNameValue;
 import io.maestro3.chef.client.http.client.serialization.Deserializer;
 import io.maestro3.chef.client.http.client.serialization.Serializer;
+import org.apache.http.client.config.RequestConfig;
 
 import java.lang.reflect.Type;
 import java.util.LinkedList;
@@ -75,6 +76,16 @@ public class RequestBuilder {
         return this;
     }
 
+    public RequestBuilder config(RequestConfig requestConfig) {
+        this.request.setRequestConfig(requestConfig);
+        return this;
+    }
+
+    public RequestBuilder abortSignal(AbortSignal abortSignal) {
+        this.request.setAbortSignal(abortSignal);
+        return this;
+    }
+
     public RequestBuilder deserializer(Deserializer deserializer) {
         this.request.setDeserializer(deserializer);
         return this;
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cuts tail latency of requests to a single server: if a request has not completed within the given percentile of
+ * recent response times, a second identical request is sent and the first response wins. Hedges are limited to a
+ * share of requests, so a slow server gets at most that much additional load. Must be used only for requests which
+ * are safe to send twice.
+ */
+public class RequestHedger {
+
+    // delay percentile is recomputed once per this many samples, sorting the window on every request is too costly
+    private static final int DELAY_UPDATE_SAMPLES = 64;
+    private static final long TOKEN = 1000;
+
+    private final String name;
+    private final int percentile;
+    private final long minDelayMillis;
+    private final long tokensPerRequest;
+    private final long maxTokens;
+
+    // guarded by this
+    private final long[] latencyWindowNanos;
+    private int position;
+    private int recordedSamples;
+    private int samplesSinceUpdate;
+    private long delayMillis;
+    private long tokens;
+    private long hedges;
+    private long hedgesWon;
+
+    /**
+     * @param percentile         percentile of recent response times after which the request is hedged, e.g. 95
+     * @param initialDelayMillis delay used until the window has enough response times
+     * @param budgetPercent      maximal share of requests which may be hedged, in percent
+     */
+    public RequestHedger(String name, int percentile, long minDelayMillis, long initialDelayMillis, int budgetPercent,
+                         int windowSize) {
+        Assert.isTrue(percentile > 0 && percentile < 100, "percentile must be between 1 and 99.");
+        Assert.isTrue(budgetPercent > 0 && budgetPercent <= 100, "budgetPercent must be between 1 and 100.");
+        Assert.isTrue(windowSize >= DELAY_UPDATE_SAMPLES, "windowSize must not be less than " + DELAY_UPDATE_SAMPLES + ".");
+        this.name = name;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.delayMillis = Math.max(minDelayMillis, initialDelayMillis);
+        this.tokensPerRequest = budgetPercent * TOKEN / 100;
+        // bursts are limited to the budget of a hundred requests
+        this.maxTokens = budgetPercent * TOKEN;
+        this.tokens = TOKEN;
+        this.latencyWindowNanos = new long[windowSize];
+    }
+
+    /**
+     * Starts the request and, if it is slow and the budget allows, its hedge. Once the returned future completes, the
+     * attempt still running is cancelled, so it can abort its request and give back what it holds.
+     *
+     * @param attempt starts one attempt of the request, every call must build and sign the request anew
+     * @return future of the first completed attempt, fails only if all started attempts failed
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+        long delay = onRequest();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        start(attempt, result, running, false);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || !tryHedge()) {
+                return;
+            }
+            running.incrementAndGet();
+            start(attempt, result, running, true);
+        });
+        return result;
+    }
+
+    public synchronized long getDelayMillis() {
+        return delayMillis;
+    }
+
+    public synchronized long getHedges() {
+        return hedges;
+    }
+
+    public synchronized long getHedgesWon() {
+        return hedgesWon;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> attempt, CompletableFuture<T> result, AtomicInteger running,
+                           boolean hedge) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<T> started;
+        try {
+            started = attempt.get();
+        } catch (Throwable e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> startedAttempt = started;
+        result.whenComplete((value, error) -> startedAttempt.cancel(true));
+        started.whenComplete((value, error) -> {
+            if (error == null) {
+                recordLatency(System.nanoTime() - startNanos);
+                if (result.complete(value) && hedge) {
+                    onHedgeWon();
+                }
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    private synchronized long onRequest() {
+        tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+        return delayMillis;
+    }
+
+    private synchronized boolean tryHedge() {
+        if (tokens < TOKEN) {
+            return false;
+        }
+        tokens -= TOKEN;
+        hedges++;
+        return true;
+    }
+
+    private synchronized void onHedgeWon() {
+        hedgesWon++;
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencyWindowNanos[position] = latencyNanos;
+        position = (position + 1) % latencyWindowNanos.length;
+        recordedSamples = Math.min(recordedSamples + 1, latencyWindowNanos.length);
+        if (++samplesSinceUpdate >= DELAY_UPDATE_SAMPLES) {
+            samplesSinceUpdate = 0;
+            long[] sorted = Arrays.copyOf(latencyWindowNanos, recordedSamples);
+            Arrays.sort(sorted);
+            long percentileNanos = sorted[(int) ((long) (recordedSamples - 1) * percentile / 100)];
+            delayMillis = Math.max(minDelayMillis, TimeUnit.NANOSECONDS.toMillis(percentileNanos));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.springframework.util.Assert;
+
+/**
+ * Limits retries to a server to a share of its requests. Every request deposits a fraction of a token, every retry
+ * takes a whole one, so while the server fails most requests retries stop instead of multiplying its load.
+ * Also keeps the retry policy of the server, applied to commands which do not define their own.
+ */
+public class RetryBudget {
+
+    // tokens are counted in thousandths, so that fractions deposited by requests add up exactly
+    private static final long TOKEN = 1000;
+
+    private final String name;
+    private final RetryPolicy defaultPolicy;
+    private final long tokensPerRequest;
+    private final long maxTokens;
+
+    // guarded by this
+    private long tokens;
+    private long retries;
+    private long denied;
+
+    /**
+     * @param retryRatio maximal number of retries per request in the long run, e.g. 0.1 for one retry per ten requests
+     * @param maxTokens  number of retries allowed in a burst, budget starts full
+     */
+    public RetryBudget(String name, RetryPolicy defaultPolicy, double retryRatio, int maxTokens) {
+        Assert.notNull(defaultPolicy, "defaultPolicy cannot be null.");
+        Assert.isTrue(retryRatio >= 0, "retryRatio must not be negative.");
+        Assert.isTrue(maxTokens > 0, "maxTokens must be positive.");
+        this.name = name;
+        this.defaultPolicy = defaultPolicy;
+        this.tokensPerRequest = Math.round(retryRatio * TOKEN);
+        this.maxTokens = maxTokens * TOKEN;
+        this.tokens = this.maxTokens;
+    }
+
+    /**
+     * Registers the first attempt of a request.
+     */
+    public synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+    }
+
+    /**
+     * @return true and takes a token if the retry fits into the budget
+     */
+    public synchronized boolean tryRetry() {
+        if (tokens >= TOKEN) {
+            tokens -= TOKEN;
+            retries++;
+            return true;
+        }
+        denied++;
+        return false;
+    }
+
+    public RetryPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getDenied() {
+        return denied;
+    }
+
+    public synchronized double getTokens() {
+        return (double) tokens / TOKEN;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How many times and how soon a failed request is repeated. Delays grow exponentially and are fully jittered, i.e.
+ * chosen uniformly between zero and the exponential delay, so clients which failed together do not retry together.
+ * Which failures are worth repeating is decided by the client executing the request.
+ */
+public final class RetryPolicy {
+
+    /** single attempt, failures are not repeated */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts     number of attempts including the first one
+     * @param baseDelayMillis upper bound of the delay before the first retry, doubled for every next retry
+     * @param maxDelayMillis  upper bound of any delay
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        Assert.isTrue(maxAttempts > 0, "maxAttempts must be positive.");
+        Assert.isTrue(baseDelayMillis >= 0 && baseDelayMillis <= maxDelayMillis, "baseDelayMillis must be between 0 and maxDelayMillis.");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param retry number of the retry, starting from 1
+     * @return random delay before the retry
+     */
+    public long getDelayMillis(int retry) {
+        long exponentialDelay = baseDelayMillis << Math.min(retry - 1, 30);
+        long bound = exponentialDelay < 0 || exponentialDelay > maxDelayMillis ? maxDelayMillis : exponentialDelay;
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis
+                + ", maxDelayMillis=" + maxDelayMillis + '}';
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
+import io.maestro3.sdk.internal.util.Assert;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link SimpleAsyncHttpClient} on top of {@link java.net.http.HttpClient}. The request is built and signed exactly as
+ * for the blocking client, then copied to the JDK request; the JDK response is converted back to Apache
+ * {@link org.apache.http.HttpResponse} so that existing response handlers and deserializers are reused as is.
+ */
+public class SimpleAsyncHttpClientImpl implements SimpleAsyncHttpClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleAsyncHttpClientImpl.class);
+
+    // managed by JDK client itself, setting them explicitly is rejected
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add(HttpHeaders.CONNECTION);
+        RESTRICTED_HEADERS.add(HttpHeaders.CONTENT_LENGTH);
+        RESTRICTED_HEADERS.add(HttpHeaders.EXPECT);
+        RESTRICTED_HEADERS.add(HttpHeaders.HOST);
+        RESTRICTED_HEADERS.add(HttpHeaders.UPGRADE);
+    }
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public SimpleAsyncHttpClientImpl(HttpClient httpClient, Duration requestTimeout) {
+        Assert.notNull(httpClient, "httpClient can't be null.");
+        Assert.notNull(requestTimeout, "requestTimeout can't be null.");
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> execute(String host, Request request) {
+        Assert.hasText(host, "host can't be null or empty.");
+        Assert.notNull(request, "request can't be null.");
+
+        LOG.debug("Executing async request to '{}'...", String.valueOf(request.getUri()));
+
+        java.net.http.HttpRequest jdkRequest;
+        try {
+            HttpRequest httpRequest = Utils.buildHttpRequest(request);
+            if (request.getRequestHandler() != null) {
+                request.getRequestHandler().process(httpRequest, new BasicHttpContext());
+            }
+            jdkRequest = toJdkRequest(host, httpRequest, resolveTimeout(request));
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(new SimpleHttpClientException("Unable to create request.", e));
+        }
+
+        CompletableFuture<HttpResponse<byte[]>> sent = httpClient.sendAsync(jdkRequest, HttpResponse.BodyHandlers.ofByteArray());
+        if (request.getAbortSignal() != null) {
+            // the response is no longer awaited, JDK client drops the exchange since java 16
+            request.getAbortSignal().onSend(() -> sent.cancel(true));
+        }
+        return sent
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new CompletionException(new SimpleHttpClientException("Unable to execute request.", unwrap(error)));
+                    }
+                    return readResponse(response, request);
+                });
+    }
+
+    private Duration resolveTimeout(Request request) {
+        RequestConfig config = request.getRequestConfig();
+        if (config != null && config.getSocketTimeout() > 0) {
+            return Duration.ofMillis(config.getSocketTimeout());
+        }
+        return requestTimeout;
+    }
+
+    private java.net.http.HttpRequest toJdkRequest(String host, HttpRequest httpRequest, Duration timeout) throws Exception {
+        URI uri = ((HttpUriRequest) httpRequest).getURI();
+        if (!uri.isAbsolute()) {
+            uri = URI.create(host).resolve(uri);
+        }
+
+        java.net.http.HttpRequest.BodyPublisher body = java.net.http.HttpRequest.BodyPublishers.noBody();
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            if (entity != null) {
+                body = java.net.http.HttpRequest.BodyPublishers.ofByteArray(EntityUtils.toByteArray(entity));
+                if (entity.getContentType() != null && !httpRequest.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+                    httpRequest.addHeader(entity.getContentType());
+                }
+            }
+        }
+
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .method(httpRequest.getRequestLine().getMethod(), body);
+        for (Header header : httpRequest.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    private <T> T readResponse(HttpResponse<byte[]> jdkResponse, Request request) {
+        LOG.debug("Async response received. statusCode=" + jdkResponse.statusCode());
+
+        org.apache.http.HttpResponse response = toApacheResponse(jdkResponse);
+        try {
+            if (request.getResponseHandler() != null) {
+                request.getResponseHandler().process(response);
+            }
+            return Utils.readResponse(response, request);
+        } catch (SimpleHttpClientException e) {
+            throw new CompletionException(e);
+        } catch (Throwable e) {
+            throw new CompletionException(new SimpleHttpClientException("Unable to read response.", e));
+        }
+    }
+
+    private static org.apache.http.HttpResponse toApacheResponse(HttpResponse<byte[]> jdkResponse) {
+        int statusCode = jdkResponse.statusCode();
+        BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH)));
+        for (Map.Entry<String, List<String>> header : jdkResponse.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+
+        byte[] body = jdkResponse.body();
+        if (body == null || body.length == 0) {
+            return response;
+        }
+        Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        HttpEntity entity = new ByteArrayEntity(body, contentType != null ? ContentType.parse(contentType.getValue()) : null);
+
+        // JDK client does not decompress bodies, do it the same way Apache client does
+        Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null) {
+            String codec = contentEncoding.getValue().trim().toLowerCase(Locale.ROOT);
+            if ("gzip".equals(codec) || "x-gzip".equals(codec)) {
+                entity = new GzipDecompressingEntity(entity);
+            } else if ("deflate".equals(codec)) {
+                entity = new DeflateDecompressingEntity(entity);
+            }
+            if (!(entity instanceof ByteArrayEntity)) {
+                response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+                response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+                response.removeHeaders(HttpHeaders.CONTENT_MD5);
+            }
+        }
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -19,30 +19,20 @@ package io.maestro3.chef.client.http.client;
 
 import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
 import io.maestro3.chef.client.http.client.exception.SimpleHttpResponseException;
-import io.maestro3.chef.client.http.client.parameters.TypedNameValue;
 import io.maestro3.sdk.internal.util.Assert;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPatch;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -125,7 +115,7 @@ public class SimpleHttpClientImpl implements SimpleHttpClient {
 
         HttpRequest httpRequest;
         try {
-            httpRequest = this.buildHttpRequest(request);
+            httpRequest = Utils.buildHttpRequest(request);
             if (request.getRequestHandler() != null) {
                 request.getRequestHandler().process(httpRequest, context);
             }
@@ -133,10 +123,19 @@ public class SimpleHttpClientImpl implements SimpleHttpClient {
             throw new SimpleHttpClientException("Unable to create request.", e);
         }
 
+        if (request.getAbortSignal() != null && httpRequest instanceof HttpRequestBase) {
+            HttpRequestBase abortable = (HttpRequestBase) httpRequest;
+            request.getAbortSignal().onSend(() -> {
+                abortable.abort();
+                return true;
+            });
+        }
+
         HttpResponse response;
         try {
             response = httpClient.execute(host, httpRequest, context);
         } catch (Throwable e) {
+            // affects only the pool of this client, chef clients use a dedicated pool per server
             httpClient.getConnectionManager().closeIdleConnections(0L, TimeUnit.MILLISECONDS);
             throw new SimpleHttpClientException("Unable to execute request.", e);
         }
@@ -147,7 +146,7 @@ public class SimpleHttpClientImpl implements SimpleHttpClient {
             if (request.getResponseHandler() != null) {
                 request.getResponseHandler().process(response);
             }
-            T readResponse = this.readResponse(response, request);
+            T readResponse = Utils.readResponse(response, request);
             accumulateHeaders(response, accumulator);
             return readResponse;
         } catch (SimpleHttpResponseException e) {
@@ -169,82 +168,4 @@ public class SimpleHttpClientImpl implements SimpleHttpClient {
             }
         }
     }
-
-    private void putHeaders(HttpRequest httpRequest, List<TypedNameValue<String, String>> headers) {
-        if (headers != null) {
-            for (TypedNameValue<String, String> header : headers) {
-                httpRequest.addHeader(header.getName(), header.getValue());
-            }
-        }
-    }
-
-    private <T> T readResponse(HttpResponse response, Request request) throws Exception {
-        if (request.getDeserializer() != null) {
-            return request.getDeserializer().deserialize(request.getResponseType(), response);
-        } else {
-            return null;
-        }
-    }
-
-    private HttpRequest buildHttpRequest(Request request) throws Exception {
-        HttpRequest httpRequest;
-
-        URI uri;
-        try {
-            uri = this.buildUri(request);
-        } catch (URISyntaxException e) {
-            throw new SimpleHttpClientException("Unable to build URI", e);
-        }
-
-        switch (request.getMethod()) {
-            case POST: {
-                HttpPost post = new HttpPost(uri);
-                if (request.getData() != null && request.getSerializer() != null) {
-                    request.getSerializer().serialize(request.getData(), post);
-                }
-                httpRequest = post;
-                break;
-            }
-            case PATCH:
-                HttpPatch patch = new HttpPatch(uri);
-                if (request.getData() != null && request.getSerializer() != null) {
-                    request.getSerializer().serialize(request.getData(), patch);
-                }
-                httpRequest = patch;
-                break;
-            case PUT: {
-                HttpPut put = new HttpPut(uri);
-                if (request.getData() != null && request.getSerializer() != null) {
-                    request.getSerializer().serialize(request.getData(), put);
-                }
-                httpRequest = put;
-                break;
-            }
-            case GET: {
-                httpRequest = new HttpGet(uri);
-                break;
-            }
-            case DELETE: {
-                httpRequest = new HttpDelete(uri);
-                break;
-            }
-            default: {
-                throw new IllegalArgumentException("Invalid method: " + String.valueOf(request.getMethod()));
-            }
-        }
-
-        putHeaders(httpRequest, request.getHeaders());
-
-        return httpRequest;
-    }
-
-    private URI buildUri(Request request) throws URISyntaxException {
-        URIBuilder builder = new URIBuilder(request.getUri());
-        if (!CollectionUtils.isEmpty(request.getQueryParams())) {
-            for (TypedNameValue<String, String> nv : request.getQueryParams()) {
-                builder.addParameter(nv.getName(), nv.getValue());
-            }
-        }
-        return builder.build();
-    }
 }
@@ -17,11 +17,25 @@
 
 package io.maestro3.chef.client.http.client;
 
+import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
+import io.maestro3.chef.client.http.client.parameters.TypedNameValue;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.client.utils.URIUtils;
 
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
 
 final class Utils {
     private Utils() {
@@ -38,4 +52,85 @@ final class Utils {
             throw new IllegalArgumentException("Invalid defaultHost: " + String.valueOf(defaultHost));
         }
     }
+
+    private static void putHeaders(HttpRequest httpRequest, List<TypedNameValue<String, String>> headers) {
+        if (headers != null) {
+            for (TypedNameValue<String, String> header : headers) {
+                httpRequest.addHeader(header.getName(), header.getValue());
+            }
+        }
+    }
+
+    static HttpRequest buildHttpRequest(Request request) throws Exception {
+        HttpRequest httpRequest;
+
+        URI uri;
+        try {
+            uri = buildUri(request);
+        } catch (URISyntaxException e) {
+            throw new SimpleHttpClientException("Unable to build URI", e);
+        }
+
+        switch (request.getMethod()) {
+            case POST: {
+                HttpPost post = new HttpPost(uri);
+                if (request.getData() != null && request.getSerializer() != null) {
+                    request.getSerializer().serialize(request.getData(), post);
+                }
+                httpRequest = post;
+                break;
+            }
+            case PATCH:
+                HttpPatch patch = new HttpPatch(uri);
+                if (request.getData() != null && request.getSerializer() != null) {
+                    request.getSerializer().serialize(request.getData(), patch);
+                }
+                httpRequest = patch;
+                break;
+            case PUT: {
+                HttpPut put = new HttpPut(uri);
+                if (request.getData() != null && request.getSerializer() != null) {
+                    request.getSerializer().serialize(request.getData(), put);
+                }
+                httpRequest = put;
+                break;
+            }
+            case GET: {
+                httpRequest = new HttpGet(uri);
+                break;
+            }
+            case DELETE: {
+                httpRequest = new HttpDelete(uri);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Invalid method: " + String.valueOf(request.getMethod()));
+            }
+        }
+
+        putHeaders(httpRequest, request.getHeaders());
+        if (request.getRequestConfig() != null) {
+            ((HttpRequestBase) httpRequest).setConfig(request.getRequestConfig());
+        }
+
+        return httpRequest;
+    }
+
+    private static URI buildUri(Request request) throws URISyntaxException {
+        URIBuilder builder = new URIBuilder(request.getUri());
+        if (!CollectionUtils.isEmpty(request.getQueryParams())) {
+            for (TypedNameValue<String, String> nv : request.getQueryParams()) {
+                builder.addParameter(nv.getName(), nv.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    static <T> T readResponse(HttpResponse response, Request request) throws Exception {
+        if (request.getDeserializer() != null) {
+            return request.getDeserializer().deserialize(request.getResponseType(), response);
+        } else {
+            return null;
+        }
+    }
 }
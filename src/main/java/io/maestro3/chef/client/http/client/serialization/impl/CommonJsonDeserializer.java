@@ -17,23 +17,31 @@
 
 package io.maestro3.chef.client.http.client.serialization.impl;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import io.maestro3.chef.client.http.client.serialization.Deserializer;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Type;
 
 public class CommonJsonDeserializer implements Deserializer {
 
+    private static final Gson GSON = CommonGsonFactory.create();
+
     @Override
     public <T> T deserialize(Type responseType, HttpResponse response) throws Exception {
         HttpEntity responseEntity = response.getEntity();
         if (responseEntity == null) {
             return null;
         }
-        String json = EntityUtils.toString(responseEntity);
-        return CommonGsonFactory.create().fromJson(json, responseType);
+        try (Reader reader = HashingReader.forEntity(responseEntity)) {
+            return GSON.fromJson(reader, responseType);
+        } catch (JsonIOException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : e;
+        }
     }
 
 }
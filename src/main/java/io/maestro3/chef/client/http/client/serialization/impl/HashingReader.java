@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client.serialization.impl;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.protocol.HTTP;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Reader that computes the hash of all characters passed through it. The result is equal to
+ * {@link String#hashCode()} of the whole content, so the body can be streamed without materializing it as a String.
+ */
+public class HashingReader extends FilterReader {
+
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    private int hash;
+
+    public HashingReader(Reader in) {
+        super(in);
+    }
+
+    /**
+     * Opens entity content decoded with the same charset {@link org.apache.http.util.EntityUtils#toString(HttpEntity)}
+     * would use.
+     */
+    public static HashingReader forEntity(HttpEntity entity) throws IOException {
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        if (charset == null && contentType != null) {
+            ContentType defaultContentType = ContentType.getByMimeType(contentType.getMimeType());
+            charset = defaultContentType != null ? defaultContentType.getCharset() : null;
+        }
+        if (charset == null) {
+            charset = HTTP.DEF_CONTENT_CHARSET;
+        }
+        return new HashingReader(new InputStreamReader(entity.getContent(), charset));
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c != -1) {
+            hash = 31 * hash + c;
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        for (int i = 0; i < count; i++) {
+            hash = 31 * hash + buffer[offset + i];
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped characters must be hashed as well
+        char[] buffer = new char[(int) Math.min(n, DRAIN_BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /**
+     * Reads the rest of the content, so {@link #getHash()} covers all of it.
+     */
+    public void drain() throws IOException {
+        char[] buffer = new char[DRAIN_BUFFER_SIZE];
+        while (read(buffer, 0, buffer.length) != -1) {
+            // hash is updated by read
+        }
+    }
+
+    public int getHash() {
+        return hash;
+    }
+}
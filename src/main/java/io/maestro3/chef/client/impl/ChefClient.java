@@ -17,83 +17,586 @@
 
 package io.maestro3.chef.client.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
 import io.maestro3.chef.client.command.IChefCommand;
 import io.maestro3.chef.client.context.IChefContext;
 import io.maestro3.chef.client.exception.ChefClientException;
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import io.maestro3.chef.client.exception.ChefServerUnavailableException;
 import io.maestro3.chef.client.handler.ChefRequestHandler;
+import io.maestro3.chef.client.handler.ChefRequestSigner;
 import io.maestro3.chef.client.handler.ChefResponseHandler;
+import io.maestro3.chef.client.http.client.AbortSignal;
+import io.maestro3.chef.client.http.client.AdaptiveConcurrencyLimiter;
+import io.maestro3.chef.client.http.client.CircuitBreaker;
+import io.maestro3.chef.client.http.client.InFlightRequestLimiter;
 import io.maestro3.chef.client.http.client.Request;
 import io.maestro3.chef.client.http.client.RequestBuilder;
+import io.maestro3.chef.client.http.client.RequestHedger;
+import io.maestro3.chef.client.http.client.RequestMethod;
+import io.maestro3.chef.client.http.client.RetryBudget;
+import io.maestro3.chef.client.http.client.RetryPolicy;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClient;
 import io.maestro3.chef.client.http.client.SimpleHttpClient;
 import io.maestro3.chef.client.http.client.SimpleHttpClientImpl;
 import io.maestro3.chef.client.http.client.exception.SimpleHttpClientException;
+import io.maestro3.chef.client.http.client.exception.SimpleHttpResponseException;
 import io.maestro3.chef.client.response.IChefResponse;
 import io.maestro3.chef.client.response.impl.BasicChefResponse;
 import io.maestro3.chef.client.serialization.ChefRequestSerializer;
 import io.maestro3.chef.client.serialization.ChefResponseDeserializer;
 import io.maestro3.sdk.internal.util.Assert;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ChefClient implements IChefClient {
 
-    private IChefContext context;
-    private SimpleHttpClient client;
-    private ChefResponseDeserializer deserializer;
-    private ChefResponseHandler responseHandler;
+    private static final Logger LOG = LoggerFactory.getLogger(ChefClient.class);
+    // aborts requests at the deadline of their command
+    private static final ScheduledThreadPoolExecutor DEADLINE_SCHEDULER = deadlineScheduler();
+
+    private final HttpClient httpClient;
+    private final SimpleHttpClient client;
+    private final SimpleAsyncHttpClient asyncClient;
+    private final InFlightRequestLimiter inFlightLimiter;
+    private final RequestConfig requestConfig;
+    private final AdaptiveConcurrencyLimiter serverLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final RequestHedger requestHedger;
+    private final Executor hedgeExecutor;
+    // replaced as a whole, so a request never mixes context of one version with signer of another
+    private volatile BoundContext bound;
 
     /**
      * Creates chef client. You must set chef context before using this client for command execution.
+     * Client keeps no per-request state, so single instance can be safely shared between threads.
+     * Limiter, circuit breaker, retry budget and hedger are shared by all clients of the chef server, each may be null.
+     *
+     * @param maxInFlight    maximum number of concurrently running {@link #executeAsync(IChefCommand)} requests
+     * @param requestConfig  config applied to every request of this client instead of the default config of
+     *                       http client, e.g. custom timeouts; may be null
+     * @param serverLimiter  every request of this client takes its permit; null if load of the server is not limited
+     * @param circuitBreaker requests are rejected with {@link ChefServerUnavailableException} while it is open
+     * @param retryBudget    failed requests are retried by the retry policy of the command or the default policy of
+     *                       the budget; null to never retry
+     * @param requestHedger  idempotent GET commands are hedged by it, each by the transport it would use anyway;
+     *                       null to never hedge
+     * @param hedgeExecutor  runs attempts of hedged blocking commands, should be bounded: when it rejects the first
+     *                       attempt, the caller sends the request itself without a hedge, when it rejects the hedge,
+     *                       the first attempt goes on alone; null to hedge only {@link #executeAsync(IChefCommand)}
      */
-    public ChefClient(HttpClient httpClient, IChefContext chefContext) {
+    public ChefClient(HttpClient httpClient, SimpleAsyncHttpClient asyncClient, IChefContext chefContext, int maxInFlight,
+                      RequestConfig requestConfig, AdaptiveConcurrencyLimiter serverLimiter, CircuitBreaker circuitBreaker,
+                      RetryBudget retryBudget, RequestHedger requestHedger, Executor hedgeExecutor) {
+        Assert.notNull(asyncClient, "asyncClient cannot be null.");
+        this.serverLimiter = serverLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.retryBudget = retryBudget;
+        this.requestHedger = requestHedger;
+        this.hedgeExecutor = hedgeExecutor;
+        this.httpClient = httpClient;
         this.client = new SimpleHttpClientImpl(httpClient);
-        this.deserializer = new ChefResponseDeserializer();
-        this.responseHandler = new ChefResponseHandler();
-        this.context = chefContext;
+        this.asyncClient = asyncClient;
+        this.inFlightLimiter = new InFlightRequestLimiter(maxInFlight);
+        this.requestConfig = requestConfig;
+        this.bound = chefContext != null ? new BoundContext(chefContext, new ChefRequestSigner(chefContext.getAuthenticationKey())) : null;
+    }
+
+    /**
+     * Switches this client to a newer version of its context. Older or same versions are ignored.
+     * Signer is reused while authentication key stays the same. Called on every client lookup, so the common case of
+     * an unchanged version takes no lock.
+     *
+     * @return {@code true} if the client switched to the given context
+     */
+    public boolean updateContext(IChefContext chefContext) {
+        Assert.notNull(chefContext, "chefContext cannot be null.");
+        if (!isNewer(chefContext, bound)) {
+            return false;
+        }
+        synchronized (this) {
+            BoundContext current = bound;
+            if (isNewer(chefContext, current)) {
+                bound = bind(chefContext, current);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isNewer(IChefContext chefContext, BoundContext current) {
+        return current == null || chefContext.getVersion() > current.context.getVersion();
+    }
+
+    private static BoundContext bind(IChefContext chefContext, BoundContext current) {
+        ChefRequestSigner signer = current != null && current.context.getAuthenticationKey().equals(chefContext.getAuthenticationKey())
+                ? current.signer
+                : new ChefRequestSigner(chefContext.getAuthenticationKey());
+        return new BoundContext(chefContext, signer);
     }
 
     @Override
     public <R> IChefResponse<R> execute(IChefCommand<R> command) throws ChefClientException {
-        Assert.notNull(context, "You must set chef context before using this client for command execution");
+        BoundContext current = bound;
+        Assert.notNull(current, "You must set chef context before using this client for command execution");
+        RetryPolicy retryPolicy = retryPolicyOf(command);
+        for (int attempt = 1; ; attempt++) {
+            IChefResponse<R> response = null;
+            ChefClientException failure = null;
+            try {
+                response = isHedged(command) && hedgeExecutor != null
+                        ? executeHedged(current, command)
+                        : executeOnce(current, command, null);
+            } catch (ChefClientException e) {
+                failure = e;
+            }
+            long retryDelay = retryDelayMillis(command, retryPolicy, attempt, response, failure);
+            if (retryDelay < 0) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure != null ? failure : new ChefClientException("Interrupted before retry of "
+                        + command.getClass().getSimpleName() + " command.", e);
+            }
+        }
+    }
+
+    @Override
+    public <R> CompletableFuture<IChefResponse<R>> executeAsync(IChefCommand<R> command) {
+        BoundContext current = bound;
+        Assert.notNull(current, "You must set chef context before using this client for command execution");
+        CompletableFuture<IChefResponse<R>> result = new CompletableFuture<>();
+        executeAsync(current, command, retryPolicyOf(command), 1, result);
+        return result;
+    }
+
+    /**
+     * @return http client of the blocking transport, bound to the connection pool of the server
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public IChefContext getContext() {
+        BoundContext current = bound;
+        return current != null ? current.context : null;
+    }
+
+    /**
+     * Both attempts of a hedged command are sent by the blocking transport, so they use the connection pool and
+     * timeouts of the server like any other blocking command. The losing attempt is aborted.
+     * Attempts run on the bounded hedge executor, if it has no free thread for the first attempt, the caller sends the
+     * request itself, so a slow server can't make the number of threads grow.
+     */
+    private <R> IChefResponse<R> executeHedged(BoundContext current, IChefCommand<R> command) throws ChefClientException {
+        CompletableFuture<IChefResponse<R>> result = requestHedger.execute(() -> {
+            AbortSignal abortSignal = new AbortSignal();
+            return abortOnCancel(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return executeOnce(current, command, abortSignal);
+                } catch (ChefClientException e) {
+                    throw new CompletionException(e);
+                }
+            }, hedgeExecutor), abortSignal);
+        });
         try {
-            BasicChefResponse<R> response = new BasicChefResponse<>();
-            if (command.getReturnRaw()) {
-                String rawResult = client.execute(context.getUri(), buildRequest(command));
-                response.setRawResult(rawResult);
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                // failures of executeOnce are always wrapped, so only the executor rejects with this exception
+                return executeOnce(current, command, null);
+            }
+            throw toChefClientException(command, cause);
+        }
+    }
+
+    /**
+     * Socket timeout of the blocking transport limits each read only, so a request of a command with deadline is also
+     * aborted when the deadline expires.
+     *
+     * @param abortSignal aborts the request when its response is no longer needed, may be null
+     */
+    private <R> IChefResponse<R> executeOnce(BoundContext current, IChefCommand<R> command, AbortSignal abortSignal)
+            throws ChefClientException {
+        Deadline deadline = command.getDeadline();
+        if (deadline != null && abortSignal == null) {
+            abortSignal = new AbortSignal();
+        }
+        CircuitBreaker.Call call = null;
+        if (circuitBreaker != null) {
+            call = circuitBreaker.tryAcquire();
+            if (call == null) {
+                throw serverUnavailable(current, command);
+            }
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+        ScheduledFuture<?> deadlineAbort = null;
+        long startNanos = 0;
+        try {
+            checkDeadline(command);
+            if (serverLimiter != null) {
+                permit = deadline != null ? serverLimiter.acquire(deadline.remainingMillis()) : serverLimiter.acquire();
+                // time left might have been spent in the queue of the limiter
+                checkDeadline(command);
+            }
+            if (deadline != null) {
+                deadlineAbort = DEADLINE_SCHEDULER.schedule(abortSignal::abort, Math.max(1, deadline.remainingMillis()),
+                        TimeUnit.MILLISECONDS);
+            }
+            startNanos = System.nanoTime();
+            IChefResponse<R> response = send(current, command, abortSignal);
+            if (abortSignal != null && abortSignal.isAborted()) {
+                // body might have been cut off by the abort and read as a malformed one
+                throw new SimpleHttpClientException("Request was aborted while its response was read.");
+            }
+            outcome = outcomeOf(response, null);
+            return response;
+        } catch (Exception exception) {
+            if (abortSignal != null && abortSignal.isAborted()) {
+                if (deadline != null && deadline.isExpired()) {
+                    // server did not answer in time, that counts like a timeout
+                    outcome = outcomeOf(null, exception);
+                    throw new ChefDeadlineExceededException("Deadline exceeded while " + command.getClass().getSimpleName()
+                            + " command was executed, request aborted.", exception);
+                }
+                // aborted request says nothing about the server
+                outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
             } else {
-                R result = client.execute(context.getUri(), buildRequest(command));
-                response.setResult(result);
+                outcome = outcomeOf(null, exception);
+            }
+            throw toChefClientException(command, exception);
+        } finally {
+            if (deadlineAbort != null) {
+                deadlineAbort.cancel(false);
+            }
+            if (permit != null) {
+                serverLimiter.release(permit, outcome);
+            }
+            if (call != null) {
+                circuitBreaker.complete(call, outcome, System.nanoTime() - startNanos);
             }
-            response.setCode(responseHandler.getLastResponseCode());
-            response.setDescription(responseHandler.getLastResponseDescription());
-            response.setErrorOccurred(responseHandler.getLastResponseError());
+        }
+    }
 
-            response.setHash(deserializer.getLashResponseHash());
-            if (!response.getErrorOccurred()) {
-                response.setErrorOccurred(deserializer.getLastResponseError());
+    /**
+     * Runs one attempt and schedules the next one if the attempt should be retried. Cancellation of the result aborts
+     * the running attempt, whether it is queued or already sent, and no further attempt is started.
+     */
+    private <R> void executeAsync(BoundContext current, IChefCommand<R> command, RetryPolicy retryPolicy, int attempt,
+                                  CompletableFuture<IChefResponse<R>> result) {
+        if (result.isDone()) {
+            // cancelled while waiting for the retry
+            return;
+        }
+        CompletableFuture<IChefResponse<R>> attemptResult = inFlightLimiter.submit(() -> isHedged(command)
+                ? requestHedger.execute(() -> sendLimitedAsync(current, command))
+                : sendLimitedAsync(current, command));
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                attemptResult.cancel(true);
+            }
+        });
+        attemptResult.whenComplete((response, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                ChefClientException failure = null;
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    failure = toAsyncFailure(command, cause);
+                }
+                long retryDelay = retryDelayMillis(command, retryPolicy, attempt, response, failure);
+                if (retryDelay >= 0) {
+                    // in-flight slot is not held while waiting for the retry
+                    CompletableFuture.delayedExecutor(retryDelay, TimeUnit.MILLISECONDS)
+                            .execute(() -> executeAsync(current, command, retryPolicy, attempt + 1, result));
+                } else if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(response);
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
             }
+        });
+    }
+
+    private boolean isHedged(IChefCommand<?> command) {
+        return requestHedger != null && command.getMethod() == RequestMethod.GET && command.isIdempotent();
+    }
+
+    private RetryPolicy retryPolicyOf(IChefCommand<?> command) {
+        if (retryBudget == null) {
+            return RetryPolicy.NONE;
+        }
+        retryBudget.onRequest();
+        RetryPolicy commandPolicy = command.getRetryPolicy();
+        return commandPolicy != null ? commandPolicy : retryBudget.getDefaultPolicy();
+    }
 
+    /**
+     * @return delay before the next attempt, -1 if the command is not retried
+     */
+    private long retryDelayMillis(IChefCommand<?> command, RetryPolicy retryPolicy, int attempt, IChefResponse<?> response,
+                                  ChefClientException failure) {
+        if (attempt >= retryPolicy.getMaxAttempts() || !isRetryable(command, response, failure)) {
+            return -1;
+        }
+        long delay = retryPolicy.getDelayMillis(attempt);
+        Deadline deadline = command.getDeadline();
+        if (deadline != null && deadline.remainingMillis() <= delay) {
+            // retry could not complete in time, it would only add load
+            return -1;
+        }
+        if (!retryBudget.tryRetry()) {
+            return -1;
+        }
+        LOG.debug("{} command to {} failed, retrying ({}/{}): {}", command.getClass().getSimpleName(),
+                retryBudget.getName(), attempt, retryPolicy.getMaxAttempts() - 1,
+                failure != null ? failure.getMessage() : "code " + response.getCode());
+        return delay;
+    }
+
+    /**
+     * Only failures which are likely to pass are retried: gateway errors of idempotent commands and failures to
+     * connect. Any command is retried if connection was not established, because then the request was never sent.
+     */
+    private static boolean isRetryable(IChefCommand<?> command, IChefResponse<?> response, ChefClientException failure) {
+        if (failure == null) {
+            return response != null && command.isIdempotent() && isGatewayError(response.getCode());
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ChefDeadlineExceededException) {
+                return false;
+            }
+            if (cause instanceof ChefServerUnavailableException || cause instanceof RejectedExecutionException
+                    || cause instanceof ConnectionPoolTimeoutException) {
+                // rejected locally, repeating only adds to the load which caused the rejection
+                return false;
+            }
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+            if (cause instanceof NoHttpResponseException) {
+                // pooled connection was closed by the server, the request might have been processed
+                return command.isIdempotent();
+            }
+            if (cause instanceof SimpleHttpResponseException) {
+                return command.isIdempotent() && isGatewayError(((SimpleHttpResponseException) cause).getStatusCode());
+            }
+        }
+        return false;
+    }
+
+    private static boolean isGatewayError(int code) {
+        return code == HttpStatus.SC_BAD_GATEWAY || code == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || code == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    private <R> IChefResponse<R> send(BoundContext current, IChefCommand<R> command, AbortSignal abortSignal)
+            throws SimpleHttpClientException {
+        IChefContext context = current.context;
+        // status, hash and body of this execution are collected only into its own response object
+        BasicChefResponse<R> response = new BasicChefResponse<>();
+        if (command.getReturnRaw()) {
+            String rawResult = client.execute(context.getUri(), buildRequest(current, command, response, abortSignal));
+            response.setRawResult(rawResult);
+        } else {
+            R result = client.execute(context.getUri(), buildRequest(current, command, response, abortSignal));
+            response.setResult(result);
+        }
+        return response;
+    }
+
+    /**
+     * Cancelling the returned future aborts the request, which then gives back its permit of the limiter.
+     */
+    private <R> CompletableFuture<IChefResponse<R>> sendLimitedAsync(BoundContext current, IChefCommand<R> command) {
+        CircuitBreaker.Call call = null;
+        if (circuitBreaker != null) {
+            call = circuitBreaker.tryAcquire();
+            if (call == null) {
+                return CompletableFuture.failedFuture(serverUnavailable(current, command));
+            }
+        }
+        AbortSignal abortSignal = new AbortSignal();
+        if (serverLimiter == null && call == null) {
+            return abortAtDeadline(command, abortOnCancel(sendAsync(current, command, abortSignal), abortSignal), abortSignal);
+        }
+        CircuitBreaker.Call breakerCall = call;
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> permitFuture = serverLimiter != null
+                ? serverLimiter.acquireAsync()
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<IChefResponse<R>> result = permitFuture.thenCompose(permit -> {
+            long startNanos = System.nanoTime();
+            CompletableFuture<IChefResponse<R>> sent;
+            try {
+                if (abortSignal.isAborted()) {
+                    throw new CancellationException("Request was aborted before it was sent.");
+                }
+                // time left might have been spent in the queues of the client and the limiter
+                checkDeadline(command);
+                sent = sendAsync(current, command, abortSignal);
+            } catch (Throwable e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            return sent.whenComplete((response, error) -> {
+                AdaptiveConcurrencyLimiter.Outcome outcome;
+                if (abortSignal.isAborted()) {
+                    // server which did not answer in time counts as timed out, other aborts say nothing about it
+                    outcome = command.getDeadline() != null && command.getDeadline().isExpired()
+                            ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                            : AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+                } else {
+                    outcome = outcomeOf(response, error);
+                }
+                if (permit != null) {
+                    serverLimiter.release(permit, outcome);
+                }
+                if (breakerCall != null) {
+                    circuitBreaker.complete(breakerCall, outcome, System.nanoTime() - startNanos);
+                }
+            });
+        });
+        if (breakerCall != null) {
+            // request rejected by the limiter never reached the server, call is given up without changing the breaker
+            result.whenComplete((response, error) -> circuitBreaker.complete(breakerCall, AdaptiveConcurrencyLimiter.Outcome.IGNORED, 0));
+        }
+        return abortAtDeadline(command, abortOnCancel(result, abortSignal), abortSignal);
+    }
+
+    private static <T> CompletableFuture<T> abortAtDeadline(IChefCommand<?> command, CompletableFuture<T> future,
+                                                            AbortSignal abortSignal) {
+        Deadline deadline = command.getDeadline();
+        if (deadline == null || future.isDone()) {
+            return future;
+        }
+        ScheduledFuture<?> deadlineAbort = DEADLINE_SCHEDULER.schedule(abortSignal::abort, Math.max(1, deadline.remainingMillis()),
+                TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> deadlineAbort.cancel(false));
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> abortOnCancel(CompletableFuture<T> future, AbortSignal abortSignal) {
+        future.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                abortSignal.abort();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Server errors and transport failures, including timeouts, mean the server is overloaded. Other failures happen
+     * on client side and say nothing about the server.
+     */
+    private static AdaptiveConcurrencyLimiter.Outcome outcomeOf(IChefResponse<?> response, Throwable error) {
+        if (error == null) {
+            return response != null && response.getCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR
+                    ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                    : AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+            }
+        }
+        return AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+    }
+
+    private <R> CompletableFuture<IChefResponse<R>> sendAsync(BoundContext current, IChefCommand<R> command,
+                                                             AbortSignal abortSignal) {
+        IChefContext context = current.context;
+        BasicChefResponse<R> response = new BasicChefResponse<>();
+        Request request = buildRequest(current, command, response, abortSignal);
+        if (command.getReturnRaw()) {
+            return asyncClient.<String>execute(context.getUri(), request).thenApply(rawResult -> {
+                response.setRawResult(rawResult);
+                return response;
+            });
+        }
+        return asyncClient.<R>execute(context.getUri(), request).thenApply(result -> {
+            response.setResult(result);
             return response;
-        } catch (SimpleHttpClientException exception) {
-            throw new ChefClientException("Cannot execute " + command.getClass().getSimpleName() + " command.", exception);
-        } catch (Exception exception) {
-            throw new ChefClientException("Unexpected exception. " + exception.getMessage(), exception);
+        });
+    }
+
+    /**
+     * Request failed after the deadline was either aborted at the deadline or timed out by the request timeout cut to
+     * the time left, both are reported as exceeded deadline, the same way as the abort of a blocking request.
+     */
+    private static ChefClientException toAsyncFailure(IChefCommand<?> command, Throwable exception) {
+        Deadline deadline = command.getDeadline();
+        if (deadline != null && deadline.isExpired() && !(exception instanceof ChefDeadlineExceededException)) {
+            return new ChefDeadlineExceededException("Deadline exceeded while " + command.getClass().getSimpleName()
+                    + " command was executed, request aborted.", exception);
         }
+        return toChefClientException(command, exception);
     }
 
-    public IChefContext getContext() {
-        return context;
+    private ChefServerUnavailableException serverUnavailable(BoundContext current, IChefCommand<?> command) {
+        return new ChefServerUnavailableException("Chef server " + current.context.getServerId() + " is unavailable, "
+                + command.getClass().getSimpleName() + " command rejected. Next attempt in "
+                + circuitBreaker.getRemainingOpenMillis() + " ms.");
+    }
+
+    private static ChefClientException toChefClientException(IChefCommand<?> command, Throwable exception) {
+        if (exception instanceof ChefClientException) {
+            return (ChefClientException) exception;
+        }
+        if (exception instanceof RejectedExecutionException) {
+            return new ChefClientException("Chef server is overloaded, " + command.getClass().getSimpleName()
+                    + " command rejected. " + exception.getMessage(), exception);
+        }
+        if (exception instanceof SimpleHttpClientException) {
+            return new ChefClientException("Cannot execute " + command.getClass().getSimpleName() + " command.", exception);
+        }
+        return new ChefClientException("Unexpected exception. " + exception.getMessage(), exception);
     }
 
-    private Request buildRequest(IChefCommand command) {
+    private Request buildRequest(BoundContext current, IChefCommand command, BasicChefResponse<?> response,
+                                 AbortSignal abortSignal) {
         Assert.notNull(command.getMethod(), "Command must specify request method to be used");
 
         RequestBuilder builder = new RequestBuilder();
-        builder.toUri(buildUri(command))
-                .deserializer(deserializer)
-                .with(new ChefRequestHandler(context, command))
-                .with(responseHandler);
+        builder.toUri(buildUri(current.context, command))
+                .config(requestConfigOf(command))
+                .abortSignal(abortSignal)
+                .deserializer(new ChefResponseDeserializer(response))
+                .with(new ChefRequestHandler(current.context, command, current.signer))
+                .with(new ChefResponseHandler(response));
         if (command.getReturnRaw()) {
             builder.as(String.class);
         } else {
@@ -118,7 +621,49 @@ public class ChefClient implements IChefClient {
         return builder.create();
     }
 
-    private String buildUri(IChefCommand command) {
+    private static void checkDeadline(IChefCommand<?> command) throws ChefDeadlineExceededException {
+        Deadline deadline = command.getDeadline();
+        if (deadline != null) {
+            deadline.check(command.getClass().getSimpleName() + " command was sent");
+        }
+    }
+
+    /**
+     * Timeouts of a command with deadline are shortened to the time left. Socket timeout of the blocking transport is
+     * the limit of a single read, so a slowly answering server could still hold the request past the deadline, such
+     * requests are aborted at the deadline by {@link #executeOnce}. Request timeout of the non-blocking transport
+     * only limits the wait for the response headers, so asynchronous requests are aborted at the deadline by
+     * {@link #sendLimitedAsync}.
+     */
+    private RequestConfig requestConfigOf(IChefCommand<?> command) {
+        Deadline deadline = command.getDeadline();
+        if (deadline == null) {
+            return requestConfig;
+        }
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remainingMillis()));
+        RequestConfig base = requestConfig != null ? requestConfig : RequestConfig.DEFAULT;
+        return RequestConfig.copy(base)
+                .setConnectTimeout(capTimeout(base.getConnectTimeout(), remaining))
+                .setConnectionRequestTimeout(capTimeout(base.getConnectionRequestTimeout(), remaining))
+                .setSocketTimeout(capTimeout(base.getSocketTimeout(), remaining))
+                .build();
+    }
+
+    private static ScheduledThreadPoolExecutor deadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("chef-deadline-%d")
+                .setDaemon(true)
+                .build());
+        // most requests complete in time, their cancelled aborts must not pile up in the queue
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static int capTimeout(int timeout, int remaining) {
+        return timeout > 0 ? Math.min(timeout, remaining) : remaining;
+    }
+
+    private String buildUri(IChefContext context, IChefCommand command) {
         String query = command.getQuery();
         String chefBaseUrl = context.getUri() + context.getOrganizationResourcePrefix();
         if (StringUtils.isNotBlank(query)) {
@@ -126,4 +671,15 @@ public class ChefClient implements IChefClient {
         }
         return chefBaseUrl + command.getResourceName();
     }
+
+    private static final class BoundContext {
+
+        private final IChefContext context;
+        private final ChefRequestSigner signer;
+
+        private BoundContext(IChefContext context, ChefRequestSigner signer) {
+            this.context = context;
+            this.signer = signer;
+        }
+    }
 }
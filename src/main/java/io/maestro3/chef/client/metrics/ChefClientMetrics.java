@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of chef client metrics, e.g. requests saved by client side optimizations and state of per server limiters, circuit breakers,
+ * retry budgets and request hedgers.
+ */
+@Component
+public class ChefClientMetrics {
+
+    public static final String DATA_BAG_WRITES_SKIPPED = "chef.databag.writes.skipped";
+    public static final String LIMITER = "chef.limiter";
+    public static final String CIRCUIT_BREAKER = "chef.breaker";
+    public static final String RETRIES = "chef.retries";
+    public static final String HEDGING = "chef.hedging";
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return counter of data bag item writes skipped because item content did not change
+     */
+    public Counter getDataBagWritesSkipped() {
+        return registry.counter(DATA_BAG_WRITES_SKIPPED);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.serialization;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Serialized request body together with its chef content hash, computed while the body was written. Entity is
+ * repeatable, so the same bytes are used for signing, sending and possible retries.
+ */
+public class ChefRequestEntity extends ByteArrayEntity {
+
+    private final String contentHash;
+
+    public ChefRequestEntity(byte[] buffer, int length, String contentHash) {
+        super(buffer, 0, length, ContentType.APPLICATION_JSON);
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * @return base64 encoded SHA-1 hash of the body, as expected in X-Ops-Content-Hash header
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+}
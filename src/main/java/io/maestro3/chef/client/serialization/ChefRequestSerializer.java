@@ -17,14 +17,28 @@
 
 package io.maestro3.chef.client.serialization;
 
+import com.google.gson.Gson;
 import io.maestro3.chef.client.command.IChefCommand;
 import io.maestro3.chef.client.http.client.serialization.Serializer;
 import io.maestro3.chef.client.http.client.serialization.impl.CommonGsonFactory;
+import io.maestro3.chef.client.utils.ChefUtils;
 import org.apache.http.HttpEntityEnclosingRequest;
-import org.apache.http.entity.StringEntity;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Serializes request data into UTF-8 JSON once. Content hash is computed while writing, so the body is neither
+ * re-read nor re-encoded for signing.
+ */
 public class ChefRequestSerializer implements Serializer {
 
+    private static final Gson GSON = CommonGsonFactory.create();
+
     @Override
     public void serialize(Object data, HttpEntityEnclosingRequest request) throws Exception {
         if (data == null) {
@@ -37,6 +51,20 @@ public class ChefRequestSerializer implements Serializer {
         } else {
             toSerialize = data;
         }
-        request.setEntity(new StringEntity(CommonGsonFactory.create().toJson(toSerialize)));
+
+        BodyBuffer buffer = new BodyBuffer();
+        MessageDigest digest = ChefUtils.getHashDigest();
+        try (Writer writer = new OutputStreamWriter(new DigestOutputStream(buffer, digest), StandardCharsets.UTF_8)) {
+            GSON.toJson(toSerialize, writer);
+        }
+        request.setEntity(new ChefRequestEntity(buffer.getBuffer(), buffer.size(), ChefUtils.encodeHash(digest.digest())));
+    }
+
+    // gives access to the internal buffer to avoid copying it once more
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+
+        private byte[] getBuffer() {
+            return buf;
+        }
     }
 }
@@ -17,24 +17,31 @@
 
 package io.maestro3.chef.client.serialization;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import io.maestro3.chef.client.http.client.serialization.Deserializer;
 import io.maestro3.chef.client.http.client.serialization.impl.CommonGsonFactory;
+import io.maestro3.chef.client.http.client.serialization.impl.HashingReader;
+import io.maestro3.chef.client.response.impl.BasicChefResponse;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 
+/**
+ * Deserializes response body straight from the entity stream and writes its hash into the chef response of a single
+ * command execution. Marks the response as erroneous if the body can not be converted into the expected type. A new
+ * deserializer must be created for every request.
+ */
 public class ChefResponseDeserializer implements Deserializer {
-    private Integer lashResponseHash;
-    private Boolean lastResponseError;
+    private static final Gson GSON = CommonGsonFactory.create();
 
-    public Integer getLashResponseHash() {
-        return lashResponseHash;
-    }
+    private final BasicChefResponse<?> chefResponse;
 
-    public Boolean getLastResponseError() {
-        return lastResponseError;
+    public ChefResponseDeserializer(BasicChefResponse<?> chefResponse) {
+        this.chefResponse = chefResponse;
     }
 
     @SuppressWarnings("unchecked")
@@ -42,24 +49,29 @@ public class ChefResponseDeserializer implements Deserializer {
     public <T> T deserialize(Type responseType, HttpResponse response) throws Exception {
         HttpEntity responseEntity = response.getEntity();
         if (responseEntity == null) {
-            lastResponseError = false;
-            lashResponseHash = 0;
+            chefResponse.setHash(0);
             return null;
         }
-        String json = EntityUtils.toString(responseEntity);
-        lashResponseHash = json.hashCode();
         if (responseType.equals(String.class)) {
-            lastResponseError = false;
+            // raw result is requested, the body is needed as a string anyway
+            String json = EntityUtils.toString(responseEntity);
+            chefResponse.setHash(json.hashCode());
             return (T) json;
-        } else {
+        }
+        try (HashingReader reader = HashingReader.forEntity(responseEntity)) {
+            T result;
             try {
-                T result = CommonGsonFactory.create().fromJson(json, responseType);
-                lastResponseError = false;
-                return result;
+                result = GSON.fromJson(reader, responseType);
+            } catch (JsonIOException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : e;
             } catch (Exception e) {
-                lastResponseError = true;
-                return null;
+                chefResponse.setErrorOccurred(true);
+                result = null;
             }
+            // hash must cover the whole body, including anything the parser has not read
+            reader.drain();
+            chefResponse.setHash(reader.getHash());
+            return result;
         }
     }
 }
@@ -19,6 +19,7 @@ package io.maestro3.chef.client.utils;
 
 import org.bouncycastle.util.encoders.Base64;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -27,6 +28,7 @@ import java.security.PrivateKey;
 public final class ChefUtils {
     private static final int HEADER_LENGTH = 60;
     private static final String HASHING_ALGORITHM = "SHA-1";
+    private static final ThreadLocal<MessageDigest> HASH_DIGEST = ThreadLocal.withInitial(ChefUtils::createHashDigest);
 
     private ChefUtils() {
         throw new UnsupportedOperationException("Instantiation is forbidden.");
@@ -54,16 +56,42 @@ public final class ChefUtils {
      * @throws Exception when hashing algorithm can't be found
      */
     public static String getHash(String input) throws Exception {
-        MessageDigest messageDigest;
-        byte[] result;
+        return encodeHash(getHashDigest().digest(input.getBytes()));
+    }
+
+    /**
+     * Creates digest of the algorithm used by chef for path and content hashes.
+     *
+     * @return new message digest instance
+     */
+    public static MessageDigest createHashDigest() {
         try {
-            messageDigest = MessageDigest.getInstance(HASHING_ALGORITHM);
-            byte[] digest = messageDigest.digest(input.getBytes());
-            result = Base64.encode(digest);
+            return MessageDigest.getInstance(HASHING_ALGORITHM);
         } catch (NoSuchAlgorithmException e) {
-            throw new Exception("Can't hash up string", e);
+            throw new IllegalStateException("Hashing algorithm is not available: " + HASHING_ALGORITHM, e);
         }
-        return new String(result);
+    }
+
+    /**
+     * Gives digest of the algorithm used by chef for path and content hashes, confined to the current thread. The
+     * digest is reset, it must be completed with one of digest() methods before the next call on the same thread.
+     *
+     * @return reusable message digest instance of the current thread
+     */
+    public static MessageDigest getHashDigest() {
+        MessageDigest digest = HASH_DIGEST.get();
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Encodes computed digest the way chef expects it in headers.
+     *
+     * @param digest the digest bytes
+     * @return base64 encoded digest
+     */
+    public static String encodeHash(byte[] digest) {
+        return new String(Base64.encode(digest), StandardCharsets.US_ASCII);
     }
 
     /**
@@ -94,6 +94,10 @@ public class ChefConfiguration {
     private String chefOrganization;
     private Map<String, String> customDataBagMapping = new HashMap<>();
 
+    /**
+     * Connection pool settings for this chef server, defaults are used when not set.
+     */
+    private ChefConnectionSettings connectionSettings;
 
     public ChefConfiguration() {
     }
@@ -282,4 +286,12 @@ public class ChefConfiguration {
     public void setCustomDataBagMapping(Map<String, String> customDataBagMapping) {
         this.customDataBagMapping = customDataBagMapping;
     }
+
+    public ChefConnectionSettings getConnectionSettings() {
+        return connectionSettings;
+    }
+
+    public void setConnectionSettings(ChefConnectionSettings connectionSettings) {
+        this.connectionSettings = connectionSettings;
+    }
 }
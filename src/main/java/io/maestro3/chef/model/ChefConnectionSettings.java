@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model;
+
+/**
+ * Connection pool settings of a single chef server. Every value is optional, {@code null} means that the
+ * application-wide default is used.
+ */
+public class ChefConnectionSettings {
+
+    /**
+     * Maximum number of pooled connections to the chef server.
+     */
+    private Integer maxConnections;
+    /**
+     * Upper bound for keeping idle connection alive. Shorter Keep-Alive timeout announced by server wins.
+     */
+    private Integer keepAliveSeconds;
+    /**
+     * Connections idle longer than this are closed by background eviction.
+     */
+    private Integer idleTimeoutSeconds;
+    /**
+     * Pooled connection is re-validated before reuse after being inactive for this period.
+     */
+    private Integer validateAfterInactivityMillis;
+    private Integer connectTimeoutMillis;
+    private Integer socketTimeoutMillis;
+    /**
+     * Number of node search pages requested from the server at the same time.
+     */
+    private Integer searchParallelism;
+
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Integer getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(Integer keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public Integer getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(Integer idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public Integer getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    public void setValidateAfterInactivityMillis(Integer validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    public Integer getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(Integer connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public Integer getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(Integer socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public Integer getSearchParallelism() {
+        return searchParallelism;
+    }
+
+    public void setSearchParallelism(Integer searchParallelism) {
+        this.searchParallelism = searchParallelism;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of chef autoconfiguration post-processing of all instances of one launch.
+ */
+public class AutoconfigurationReport {
+
+    private final List<InstanceAutoconfigurationResult> results;
+    private final long durationMillis;
+
+    public AutoconfigurationReport(List<InstanceAutoconfigurationResult> results, long durationMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.durationMillis = durationMillis;
+    }
+
+    public static AutoconfigurationReport empty() {
+        return new AutoconfigurationReport(Collections.emptyList(), 0);
+    }
+
+    /**
+     * @return results in the order of launched instances
+     */
+    public List<InstanceAutoconfigurationResult> getResults() {
+        return results;
+    }
+
+    public List<InstanceAutoconfigurationResult> getFailed() {
+        List<InstanceAutoconfigurationResult> failed = new ArrayList<>();
+        for (InstanceAutoconfigurationResult result : results) {
+            if (!result.isSuccess()) {
+                failed.add(result);
+            }
+        }
+        return failed;
+    }
+
+    public boolean isSuccessful() {
+        return getFailed().isEmpty();
+    }
+
+    /**
+     * @return wall clock time of the whole post-processing
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the longest processing time of a single instance
+     */
+    public long getMaxInstanceMillis() {
+        long max = 0;
+        for (InstanceAutoconfigurationResult result : results) {
+            max = Math.max(max, result.getDurationMillis());
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "AutoconfigurationReport{" +
+            "instances=" + results.size() +
+            ", failed=" + getFailed().size() +
+            ", durationMillis=" + durationMillis +
+            ", maxInstanceMillis=" + getMaxInstanceMillis() +
+            '}';
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a node search run on several chef servers. Rows are grouped by server id, servers that failed or timed out
+ * are reported with the error message instead.
+ *
+ * @param <T> type of a single search row
+ */
+public class ChefFleetSearchResult<T> {
+
+    private final Map<String, List<T>> resultsByServer = new LinkedHashMap<>();
+    private final Map<String, String> errorsByServer = new LinkedHashMap<>();
+
+    public void addResults(String serverId, List<T> results) {
+        resultsByServer.put(serverId, results);
+    }
+
+    public void addError(String serverId, String errorMessage) {
+        errorsByServer.put(serverId, errorMessage);
+    }
+
+    public Map<String, List<T>> getResultsByServer() {
+        return Collections.unmodifiableMap(resultsByServer);
+    }
+
+    public Map<String, String> getErrorsByServer() {
+        return Collections.unmodifiableMap(errorsByServer);
+    }
+
+    /**
+     * @return rows of all successful servers merged in one list
+     */
+    public List<T> getAllResults() {
+        List<T> all = new ArrayList<>();
+        for (List<T> results : resultsByServer.values()) {
+            all.addAll(results);
+        }
+        return all;
+    }
+
+    /**
+     * @return {@code true} if every server returned its rows
+     */
+    public boolean isComplete() {
+        return errorsByServer.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model.data;
+
+import java.util.Map;
+
+/**
+ * Plain values of a single data bag item to be written. Values are encrypted before they are sent to chef server.
+ */
+public class DataBagItemWrite {
+
+    private final String dataBag;
+    private final String name;
+    private final Map<String, String> data;
+    private final boolean forceRefresh;
+
+    public DataBagItemWrite(String dataBag, String name, Map<String, String> data) {
+        this(dataBag, name, data, false);
+    }
+
+    /**
+     * @param forceRefresh write the item even if the same content was already written
+     */
+    public DataBagItemWrite(String dataBag, String name, Map<String, String> data, boolean forceRefresh) {
+        this.dataBag = dataBag;
+        this.name = name;
+        this.data = data;
+        this.forceRefresh = forceRefresh;
+    }
+
+    public String getDataBag() {
+        return dataBag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getData() {
+        return data;
+    }
+
+    public boolean isForceRefresh() {
+        return forceRefresh;
+    }
+
+    @Override
+    public String toString() {
+        return "DataBagItemWrite{" +
+            "dataBag='" + dataBag + '\'' +
+            ", name='" + name + '\'' +
+            '}';
+    }
+}
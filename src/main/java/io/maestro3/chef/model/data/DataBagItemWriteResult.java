@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model.data;
+
+/**
+ * Outcome of a single data bag item upsert.
+ */
+public class DataBagItemWriteResult {
+
+    private final String dataBag;
+    private final String name;
+    private final boolean success;
+    private final int code;
+    private final String error;
+    private final boolean skipped;
+
+    public DataBagItemWriteResult(String dataBag, String name, boolean success, int code, String error) {
+        this(dataBag, name, success, code, error, false);
+    }
+
+    private DataBagItemWriteResult(String dataBag, String name, boolean success, int code, String error, boolean skipped) {
+        this.dataBag = dataBag;
+        this.name = name;
+        this.success = success;
+        this.code = code;
+        this.error = error;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return successful result of a write which was not sent because the item already has the same content
+     */
+    public static DataBagItemWriteResult skipped(String dataBag, String name) {
+        return new DataBagItemWriteResult(dataBag, name, true, 0, null, true);
+    }
+
+    public String getDataBag() {
+        return dataBag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return status code of the last chef response, 0 if the item was not sent
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return error description, null if the item was written
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public String toString() {
+        return "DataBagItemWriteResult{" +
+            "dataBag='" + dataBag + '\'' +
+            ", name='" + name + '\'' +
+            ", success=" + success +
+            ", code=" + code +
+            ", error='" + error + '\'' +
+            ", skipped=" + skipped +
+            '}';
+    }
+}
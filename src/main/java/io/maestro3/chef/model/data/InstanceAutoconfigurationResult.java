@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.model.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome and timings of chef autoconfiguration post-processing of a single instance.
+ */
+public class InstanceAutoconfigurationResult {
+
+    private final String instanceId;
+    private final boolean success;
+    private final String error;
+    private final long durationMillis;
+    private final Map<String, Long> stepMillis;
+
+    public InstanceAutoconfigurationResult(String instanceId, boolean success, String error, long durationMillis,
+                                           Map<String, Long> stepMillis) {
+        this.instanceId = instanceId;
+        this.success = success;
+        this.error = error;
+        this.durationMillis = durationMillis;
+        this.stepMillis = Collections.unmodifiableMap(new LinkedHashMap<>(stepMillis));
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return time from the start of processing of the instance to its end, waiting in queue is not included
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return duration of each completed step in execution order
+     */
+    public Map<String, Long> getStepMillis() {
+        return stepMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceAutoconfigurationResult{" +
+            "instanceId='" + instanceId + '\'' +
+            ", success=" + success +
+            ", error='" + error + '\'' +
+            ", durationMillis=" + durationMillis +
+            ", stepMillis=" + stepMillis +
+            '}';
+    }
+}
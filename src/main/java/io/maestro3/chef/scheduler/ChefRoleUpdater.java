@@ -94,6 +94,6 @@ public class ChefRoleUpdater implements IChefRoleUpdater {
         } else {
             LOG.info("Chef roles not found for {}", chefConfiguration.getServerId());
         }
-        chefContextFactory.invalidateCache();
+        chefContextFactory.refreshServerContexts(chefConfiguration);
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.maestro3.sdk.internal.util.JsonUtils;
+import io.maestro3.sdk.internal.util.MapUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypts data bag item values in chef encrypted data bag format version 3 (aes-256-gcm). Derived keys are cached per
+ * data bag for a few seconds only, long enough to cover the items of one write flow, because the secret may be replaced
+ * by another node. Ciphers are reused per thread and maps with many values are encrypted in parallel.
+ */
+@Component
+public class ChefDataBagEncryptor {
+
+    public static final int GCM_AUTH_TAG_LENGTH = 128;
+
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_AUTH_TAG_BYTES = GCM_AUTH_TAG_LENGTH / Byte.SIZE;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher " + TRANSFORMATION + " is not available.", e);
+        }
+    });
+
+    private final IChefSecretProvider secretProvider;
+    private final Cache<String, SecretKey> keys;
+
+    @Value("${chef.data.bag.encryption.parallel.threshold:32}")
+    private int parallelThreshold;
+
+    @Autowired
+    public ChefDataBagEncryptor(IChefSecretProvider secretProvider,
+                                @Value("${chef.data.bag.encryption.key.cache.seconds:30}") long keyCacheSeconds) {
+        this.secretProvider = secretProvider;
+        this.keys = CacheBuilder.newBuilder()
+            .expireAfterWrite(keyCacheSeconds, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * @return encrypted values by their keys, null values are skipped
+     */
+    public Map<String, Object> encrypt(String dataBag, Map<String, String> data) throws GeneralSecurityException {
+        SecretKey key = getKey(dataBag);
+        if (data.size() < parallelThreshold) {
+            Map<String, Object> resultMap = new HashMap<>();
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                if (entry.getValue() != null) {
+                    resultMap.put(entry.getKey(), encryptValue(key, entry.getValue()));
+                }
+            }
+            return resultMap;
+        }
+
+        Map<String, Object> resultMap = new ConcurrentHashMap<>();
+        try {
+            data.entrySet().parallelStream()
+                .filter(entry -> entry.getValue() != null)
+                .forEach(entry -> {
+                    try {
+                        resultMap.put(entry.getKey(), encryptValue(key, entry.getValue()));
+                    } catch (GeneralSecurityException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) e.getCause();
+            }
+            throw e;
+        }
+        return new HashMap<>(resultMap);
+    }
+
+    /**
+     * Forgets derived key of the data bag, e.g. when its secret is deleted.
+     */
+    public void invalidate(String dataBag) {
+        keys.invalidate(dataBag);
+    }
+
+    /**
+     * Failures of the secret provider, checked or not, are reported as {@link GeneralSecurityException}, so a write of
+     * one item fails instead of the whole batch.
+     */
+    private SecretKey getKey(String dataBag) throws GeneralSecurityException {
+        try {
+            return keys.get(dataBag, () -> {
+                String secret = secretProvider.get(dataBag);
+                if (secret == null) {
+                    throw new GeneralSecurityException("Secret of data bag " + dataBag + " is not found.");
+                }
+                return deriveKey(secret);
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) e.getCause();
+            }
+            throw new GeneralSecurityException("Unable to derive key of data bag " + dataBag, e.getCause());
+        }
+    }
+
+    private static SecretKey deriveKey(String secret) throws NoSuchAlgorithmException {
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(secret.getBytes());
+        return new SecretKeySpec(sha256, 0, sha256.length, "AES");
+    }
+
+    private static Map<String, Object> encryptValue(SecretKey key, String value) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_AUTH_TAG_LENGTH, iv));
+
+        Map<String, String> dataMap = MapUtils.<String, String>builder().withPair("json_wrapper", value).build();
+        // output is ciphertext followed by the auth tag, both parts are encoded in place
+        byte[] encryptedData = cipher.doFinal(JsonUtils.convertObjectToJson(dataMap).getBytes());
+        int dataLength = encryptedData.length - GCM_AUTH_TAG_BYTES;
+
+        Map<String, Object> encrypted = new HashMap<>();
+        encrypted.put("encrypted_data", encode(encryptedData, 0, dataLength));
+        encrypted.put("version", 3);
+        encrypted.put("iv", Base64.getEncoder().encodeToString(iv));
+        encrypted.put("cipher", "aes-256-gcm");
+        encrypted.put("auth_tag", encode(encryptedData, dataLength, GCM_AUTH_TAG_BYTES));
+        return encrypted;
+    }
+
+    private static String encode(byte[] bytes, int offset, int length) {
+        ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(bytes, offset, length));
+        return new String(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining(), StandardCharsets.US_ASCII);
+    }
+}
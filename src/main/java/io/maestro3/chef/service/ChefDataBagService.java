@@ -34,9 +34,10 @@ import io.maestro3.chef.client.entity.NodeEntity;
 import io.maestro3.chef.client.exception.ChefClientException;
 import io.maestro3.chef.client.factory.IChefClientFactory;
 import io.maestro3.chef.client.response.IChefResponse;
+import io.maestro3.chef.model.data.DataBagItemWrite;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
 import io.maestro3.sdk.internal.util.CollectionUtils;
-import io.maestro3.sdk.internal.util.JsonUtils;
-import io.maestro3.sdk.internal.util.MapUtils;
+import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,26 +45,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class ChefDataBagService implements IChefDataBagService {
     private static final Logger LOG = LoggerFactory.getLogger(ChefDataBagService.class);
-    public static final int GCM_AUTH_TAG_LENGTH = 128;
+    public static final int GCM_AUTH_TAG_LENGTH = ChefDataBagEncryptor.GCM_AUTH_TAG_LENGTH;
     private static final Pattern CHEF_ROLE_PATTERN = Pattern.compile("role\\[([^]]+)]");
 
 
@@ -73,6 +68,10 @@ public class ChefDataBagService implements IChefDataBagService {
     private IChefClientFactory clientFactory;
     @Autowired
     private IChefSecretProvider secretProvider;
+    @Autowired
+    private ChefDataBagEncryptor dataBagEncryptor;
+    @Autowired
+    private DataBagWriteTracker writeTracker;
 
     @Value("${chef.data.bag.enabled:false}")
     private boolean chefDataBagEnabled;
@@ -92,7 +91,9 @@ public class ChefDataBagService implements IChefDataBagService {
         IChefCommand<CreateDataBagCommand.Result> command = new CreateDataBagCommand(name);
         try {
             IChefResponse<CreateDataBagCommand.Result> response = client.execute(command);
-            if (response.getErrorOccurred()) {
+            if (response.getCode() == HttpStatus.SC_CONFLICT) {
+                LOG.debug("Data bag {} already exists.", name);
+            } else if (response.getErrorOccurred()) {
                 LOG.info(String.format("Chef error status code: %s, Response Description: %s.", response.getCode(), response.getDescription()));
             }
         } catch (ChefClientException e) {
@@ -139,75 +140,205 @@ public class ChefDataBagService implements IChefDataBagService {
             LOG.warn("Could not create dataBag from chef server: Error message: " + e.getMessage(), e);
         } catch (GeneralSecurityException e) {
             LOG.error("Could not cipher databag values: " + e.getMessage(), e);
+        } finally {
+            // the item may have changed, so the next update must not be skipped
+            writeTracker.invalidate(context.getServerId(), dataBag, name);
         }
     }
 
     private Map<String, Object> encryptData(String databag, Map<String, String> data) throws GeneralSecurityException {
-        String key = secretProvider.get(databag);
-
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] sha256 = digest.digest(key.getBytes());
-
-        SecretKey originalKey = new SecretKeySpec(sha256, 0, sha256.length, "AES");
-
-        Map<String, Object> resultMap = new HashMap<>();
-        for (Map.Entry<String, String> entry : data.entrySet()) {
-            if (entry.getValue() != null) {
-                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-
-                SecureRandom randomSecureRandom = new SecureRandom();
-                byte[] iv = new byte[12];
-                randomSecureRandom.nextBytes(iv);
-                GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_AUTH_TAG_LENGTH, iv);
-
-                cipher.init(Cipher.ENCRYPT_MODE, originalKey, gcmParameterSpec);
-
-                Map<String, Object> value = new HashMap<>();
-                Map<String, String> dataMap = MapUtils.<String, String>builder().withPair("json_wrapper", entry.getValue()).build();
-                byte[] encryptedData = cipher.doFinal(JsonUtils.convertObjectToJson(dataMap).getBytes());
-                byte[] authTag = Arrays.copyOfRange(encryptedData, encryptedData.length - (GCM_AUTH_TAG_LENGTH / Byte.SIZE), encryptedData.length);
-                encryptedData = Arrays.copyOfRange(encryptedData, 0, encryptedData.length - (GCM_AUTH_TAG_LENGTH / Byte.SIZE));
-                value.put("encrypted_data", Base64.getEncoder().encodeToString(encryptedData));
-                value.put("version", 3);
-                value.put("iv", Base64.getEncoder().encodeToString(iv));
-                value.put("cipher", "aes-256-gcm");
-                value.put("auth_tag", Base64.getEncoder().encodeToString(authTag));
-                resultMap.put(entry.getKey(), value);
-            }
-        }
-        return resultMap;
+        return dataBagEncryptor.encrypt(databag, data);
     }
 
     @Override
     public void updateOrCreateItem(IChefContext context, String dataBag, String name, Map<String, String> data) {
+        updateOrCreateItem(context, dataBag, name, data, false);
+    }
+
+    @Override
+    public void updateOrCreateItem(IChefContext context, String dataBag, String name, Map<String, String> data, boolean forceRefresh) {
         Assert.hasText(name, "name must not be null or empty");
         Assert.notNull(context, "context must not be null");
 
-        if (!dataBagItemExists(context, dataBag, name)) {
-            createItem(context, dataBag, name, data);
+        if (CollectionUtils.isEmpty(data)) {
+            createEmptyItem(context, dataBag, name);
+            return;
+        }
+        String serverId = context.getServerId();
+        if (!forceRefresh && writeTracker.skipUnchanged(serverId, dataBag, name, data)) {
+            LOG.debug("DataBag item {}/{} is up to date, write skipped.", dataBag, name);
             return;
         }
 
         IChefClient client = clientFactory.getInstance(context);
 
+        long write = writeTracker.startWrite(serverId, dataBag, name);
         try {
-            if (CollectionUtils.isEmpty(data)){
-                return;
-            }
             Map<String, Object> item = encryptData(dataBag, data);
-            IChefCommand<Map> command = new UpdateDataBagItemCommand(dataBag, name, item);
-            //if success response equals empty map
-            IChefResponse<Map> response = client.execute(command);
+            IChefResponse<?> response = upsertItem(client, dataBag, name, item);
             if (response.getErrorOccurred()) {
+                writeTracker.invalidate(serverId, dataBag, name);
                 LOG.info(String.format("Chef error status code: %s, Response Description: %s.", response.getCode(), response.getDescription()));
+            } else {
+                writeTracker.recordWrite(serverId, dataBag, name, write, data);
             }
         } catch (ChefClientException e) {
+            writeTracker.invalidate(serverId, dataBag, name);
             LOG.warn("Could not update dataBag from chef server: Error message: " + e.getMessage(), e);
         } catch (GeneralSecurityException e) {
+            writeTracker.invalidate(serverId, dataBag, name);
             LOG.error("Could not cipher databag values: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public List<DataBagItemWriteResult> updateOrCreateItems(IChefContext context, List<DataBagItemWrite> items) {
+        Assert.notNull(context, "context must not be null");
+        Assert.notNull(items, "items must not be null");
+
+        IChefClient client = clientFactory.getInstance(context);
+
+        List<CompletableFuture<DataBagItemWriteResult>> writes = new ArrayList<>(items.size());
+        for (DataBagItemWrite write : items) {
+            writes.add(upsertItemAsync(client, context.getServerId(), write));
+        }
+        List<DataBagItemWriteResult> results = new ArrayList<>(writes.size());
+        for (CompletableFuture<DataBagItemWriteResult> write : writes) {
+            results.add(write.join());
+        }
+        return results;
+    }
+
+    @Override
+    public DataBagWriteBatch beginWrites(IChefContext context) {
+        return new DataBagWriteBatch(this, context);
+    }
+
+    /**
+     * Item without data is still created, holding only its id. An existing item is left as it is, so its data is not
+     * replaced by nothing.
+     */
+    private void createEmptyItem(IChefContext context, String dataBag, String name) {
+        IChefClient client = clientFactory.getInstance(context);
+        try {
+            IChefResponse<?> response = createItemOrDataBag(client, dataBag, name, emptyItem(name));
+            if (response.getCode() == HttpStatus.SC_CONFLICT) {
+                LOG.debug("DataBag item {}/{} already exists.", dataBag, name);
+            } else if (response.getErrorOccurred()) {
+                LOG.info(String.format("Chef error status code: %s, Response Description: %s.", response.getCode(), response.getDescription()));
+            }
+        } catch (ChefClientException e) {
+            LOG.warn("Could not create dataBag item from chef server: Error message: " + e.getMessage(), e);
+        } finally {
+            writeTracker.invalidate(context.getServerId(), dataBag, name);
+        }
+    }
+
+    private static Map<String, Object> emptyItem(String name) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", name);
+        return item;
+    }
+
+    /**
+     * Items are usually written for new instances, so creation is tried first. Existing item is replaced on conflict,
+     * missing data bag is created on not found. Each case costs one extra request only when it actually happens.
+     */
+    private IChefResponse<?> upsertItem(IChefClient client, String dataBag, String name, Map<String, Object> item) throws ChefClientException {
+        IChefResponse<?> response = createItemOrDataBag(client, dataBag, name, item);
+        if (response.getCode() == HttpStatus.SC_CONFLICT) {
+            return client.execute(new UpdateDataBagItemCommand(dataBag, name, item));
+        }
+        return response;
+    }
+
+    private IChefResponse<?> createItemOrDataBag(IChefClient client, String dataBag, String name, Map<String, Object> item) throws ChefClientException {
+        IChefResponse<?> response = client.execute(new CreateDataBagItemCommand(dataBag, name, item));
+        if (response.getCode() == HttpStatus.SC_NOT_FOUND) {
+            client.execute(new CreateDataBagCommand(dataBag));
+            return client.execute(new CreateDataBagItemCommand(dataBag, name, item));
+        }
+        return response;
+    }
+
+    private CompletableFuture<IChefResponse<?>> createItemOrDataBagAsync(IChefClient client, String dataBag, String name,
+                                                                          Map<String, Object> item) {
+        return widen(client.executeAsync(new CreateDataBagItemCommand(dataBag, name, item)))
+            .thenCompose(response -> {
+                if (response.getCode() == HttpStatus.SC_NOT_FOUND) {
+                    return client.executeAsync(new CreateDataBagCommand(dataBag))
+                        .thenCompose(bag -> widen(client.executeAsync(new CreateDataBagItemCommand(dataBag, name, item))));
+                }
+                return CompletableFuture.completedFuture(response);
+            });
+    }
+
+    private CompletableFuture<DataBagItemWriteResult> createEmptyItemAsync(IChefClient client, String serverId, String dataBag, String name) {
+        writeTracker.invalidate(serverId, dataBag, name);
+        return createItemOrDataBagAsync(client, dataBag, name, emptyItem(name))
+            .handle((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    LOG.warn("Could not create dataBag item {}/{}: Error message: {}", dataBag, name, cause.getMessage());
+                    return new DataBagItemWriteResult(dataBag, name, false, 0, cause.getMessage());
+                }
+                if (response.getErrorOccurred() && response.getCode() != HttpStatus.SC_CONFLICT) {
+                    LOG.info(String.format("Chef error status code: %s, Response Description: %s.", response.getCode(), response.getDescription()));
+                    return new DataBagItemWriteResult(dataBag, name, false, response.getCode(), response.getDescription());
+                }
+                return new DataBagItemWriteResult(dataBag, name, true, response.getCode(), null);
+            });
+    }
+
+    private CompletableFuture<DataBagItemWriteResult> upsertItemAsync(IChefClient client, String serverId, DataBagItemWrite write) {
+        String dataBag = write.getDataBag();
+        String name = write.getName();
+        if (CollectionUtils.isEmpty(write.getData())) {
+            return createEmptyItemAsync(client, serverId, dataBag, name);
+        }
+        if (!write.isForceRefresh() && writeTracker.skipUnchanged(serverId, dataBag, name, write.getData())) {
+            return CompletableFuture.completedFuture(DataBagItemWriteResult.skipped(dataBag, name));
+        }
+        Map<String, Object> item;
+        long writeId = writeTracker.startWrite(serverId, dataBag, name);
+        try {
+            item = encryptData(dataBag, write.getData());
+        } catch (GeneralSecurityException e) {
+            writeTracker.invalidate(serverId, dataBag, name);
+            LOG.error("Could not cipher databag values: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(new DataBagItemWriteResult(dataBag, name, false, 0, e.getMessage()));
+        }
+
+        return createItemOrDataBagAsync(client, dataBag, name, item)
+            .thenCompose(response -> {
+                if (response.getCode() == HttpStatus.SC_CONFLICT) {
+                    return widen(client.executeAsync(new UpdateDataBagItemCommand(dataBag, name, item)));
+                }
+                return CompletableFuture.completedFuture(response);
+            })
+            .handle((response, error) -> {
+                if (error != null || response.getErrorOccurred()) {
+                    writeTracker.invalidate(serverId, dataBag, name);
+                } else {
+                    writeTracker.recordWrite(serverId, dataBag, name, writeId, write.getData());
+                }
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    LOG.warn("Could not write dataBag item {}/{}: Error message: {}", dataBag, name, cause.getMessage());
+                    return new DataBagItemWriteResult(dataBag, name, false, 0, cause.getMessage());
+                }
+                if (response.getErrorOccurred()) {
+                    LOG.info(String.format("Chef error status code: %s, Response Description: %s.", response.getCode(), response.getDescription()));
+                    return new DataBagItemWriteResult(dataBag, name, false, response.getCode(), response.getDescription());
+                }
+                return new DataBagItemWriteResult(dataBag, name, true, response.getCode(), null);
+            });
+    }
+
+    private static <R> CompletableFuture<IChefResponse<?>> widen(CompletableFuture<IChefResponse<R>> future) {
+        return future.thenApply(response -> response);
+    }
+
     @Override
     public boolean dataBagItemExists(IChefContext context, String dataBag, String name) {
         Assert.hasText(name, "name must not be null or empty");
@@ -244,6 +375,8 @@ public class ChefDataBagService implements IChefDataBagService {
             }
             //removes key which was used for databag items encryption
             secretProvider.delete(name);
+            dataBagEncryptor.invalidate(name);
+            writeTracker.invalidateDataBag(context.getServerId(), name);
         } catch (ChefClientException e) {
             LOG.warn("Could not delete dataBag from chef server: Error message: " + e.getMessage(), e);
         }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.search.ParallelNodeSearch;
+import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.IChefContextFactory;
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import io.maestro3.chef.client.factory.IChefClientFactory;
+import io.maestro3.chef.client.http.client.InFlightRequestLimiter;
+import io.maestro3.chef.model.ChefConfiguration;
+import io.maestro3.chef.model.ChefConnectionSettings;
+import io.maestro3.chef.model.data.ChefFleetSearchResult;
+import io.maestro3.sdk.internal.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ChefFleetSearchService implements IChefFleetSearchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChefFleetSearchService.class);
+
+    private final IChefClientFactory chefClientFactory;
+    private final IChefContextFactory contextFactory;
+    private final IChefConfigurationService chefConfigurationService;
+    private final IRegionProvider regionProvider;
+    // caps number of servers searched at the same time, pages of each server are limited separately
+    private final InFlightRequestLimiter serverLimiter;
+
+    @Value("${chef.search.parallelism:4}")
+    private int defaultSearchParallelism;
+    // counted from submission of the server search, including the wait for one of chef.fleet.search.max.servers slots
+    @Value("${chef.fleet.search.server.timeout.seconds:120}")
+    private long serverTimeoutSeconds;
+
+    @Autowired
+    public ChefFleetSearchService(IChefClientFactory chefClientFactory, IChefContextFactory contextFactory,
+                                  IChefConfigurationService chefConfigurationService, IRegionProvider regionProvider,
+                                  @Value("${chef.fleet.search.max.servers:8}") int maxConcurrentServers) {
+        this.chefClientFactory = chefClientFactory;
+        this.contextFactory = contextFactory;
+        this.chefConfigurationService = chefConfigurationService;
+        this.regionProvider = regionProvider;
+        this.serverLimiter = new InFlightRequestLimiter(maxConcurrentServers);
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> search(Class<R> responseType, Collection<ChefConfiguration> chefConfigurations, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        Assert.notNull(responseType, "responseType can't be null.");
+        Assert.notNull(chefConfigurations, "chefConfigurations can't be null.");
+
+        Map<String, CompletableFuture<List<T>>> searches = new LinkedHashMap<>();
+        for (ChefConfiguration configuration : chefConfigurations) {
+            if (configuration != null && !searches.containsKey(configuration.getServerId())) {
+                searches.put(configuration.getServerId(), startSearch(responseType, configuration, searchFiendsMap, searchQueryParameters));
+            }
+        }
+
+        ChefFleetSearchResult<T> result = new ChefFleetSearchResult<>();
+        for (Map.Entry<String, CompletableFuture<List<T>>> search : searches.entrySet()) {
+            String serverId = search.getKey();
+            try {
+                result.addResults(serverId, search.getValue().join());
+            } catch (CompletionException e) {
+                String message = describeError(e.getCause());
+                LOG.error("Node search failed on chef server {}: {}", serverId, message);
+                result.addError(serverId, message);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> searchRegions(Class<R> responseType, Collection<String> regions, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        Assert.notNull(regions, "regions can't be null.");
+
+        List<ChefConfiguration> configurations = new ArrayList<>();
+        for (String region : regions) {
+            ChefConfiguration configuration = chefConfigurationService.findByRegionName(region);
+            if (configuration == null) {
+                LOG.warn("Chef does not configured for zone {}", region);
+                continue;
+            }
+            configurations.add(configuration);
+        }
+        return search(responseType, configurations, searchFiendsMap, searchQueryParameters);
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> searchAllRegions(Class<R> responseType, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        return searchRegions(responseType, regionProvider.findAll(), searchFiendsMap, searchQueryParameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends IGetNodesAttributesResult, T> CompletableFuture<List<T>> startSearch(Class<R> responseType, ChefConfiguration configuration, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        IChefContext chefContext;
+        IChefClient client;
+        try {
+            chefContext = contextFactory.getInstance(configuration);
+            client = chefContext != null ? chefClientFactory.getInstance(chefContext) : null;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (client == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Chef server is not configured for API access."));
+        }
+
+        // deadline and timeout start at submission, so time spent waiting for a free server slot counts against them
+        Deadline deadline = Deadline.after(serverTimeoutSeconds, TimeUnit.SECONDS);
+        return serverLimiter.submit(() -> {
+            // deadline stops requests of the remaining pages, timeout releases the slot of a slow server
+            ParallelNodeSearch<T> search = new ParallelNodeSearch<>(client, (Class<? extends IGetNodesAttributesResult<T>>) responseType,
+                searchFiendsMap, searchQueryParameters, ParallelNodeSearch.DEFAULT_PAGE_SIZE, getSearchParallelism(chefContext),
+                deadline);
+            return search.executeAsync().orTimeout(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        }).orTimeout(serverTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private int getSearchParallelism(IChefContext chefContext) {
+        ChefConnectionSettings settings = chefContext.getConnectionSettings();
+        if (settings != null && settings.getSearchParallelism() != null && settings.getSearchParallelism() > 0) {
+            return settings.getSearchParallelism();
+        }
+        return defaultSearchParallelism;
+    }
+
+    private String describeError(Throwable error) {
+        if (error instanceof TimeoutException || error instanceof ChefDeadlineExceededException) {
+            return "Search timed out after " + serverTimeoutSeconds + " seconds.";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+}
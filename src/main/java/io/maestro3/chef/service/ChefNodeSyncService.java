@@ -0,0 +1,226 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.search.NodeAttributes;
+import io.maestro3.chef.client.command.search.NodeDescriptor;
+import io.maestro3.chef.client.command.search.NodeSearchPageIterator;
+import io.maestro3.chef.client.command.search.attributes.GetNodesStatisticAttributesResult;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.IChefContextFactory;
+import io.maestro3.chef.client.exception.UncheckedChefClientException;
+import io.maestro3.chef.client.factory.IChefClientFactory;
+import io.maestro3.chef.model.data.ChefNodeData;
+import io.maestro3.chef.model.data.ChefNodeDataReport;
+import io.maestro3.sdk.internal.util.Assert;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Service
+public class ChefNodeSyncService implements IChefNodeSyncService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChefNodeSyncService.class);
+
+    private static final int NODE_SYNC_PAGE_SIZE = 1000;
+    private static final String OHAI_TIME_ATTRIBUTE = "ohai_time";
+    // ohai_time:[<watermark> TO *], url encoded
+    private static final String WATERMARK_RANGE_PATTERN = "%%5B%d%%20TO%%20*%%5D";
+
+    private final IChefClientFactory chefClientFactory;
+    private final IChefContextFactory contextFactory;
+
+    // full pass reloads all nodes: it adds nodes the incremental queries missed and drops deleted ones
+    @Value("${chef.node.sync.full.pass.minutes:60}")
+    private long fullPassIntervalMinutes;
+    // should exceed the longest chef run: ohai_time is taken when a run starts, but the node is saved when it ends
+    @Value("${chef.node.sync.overlap.seconds:300}")
+    private long watermarkOverlapSeconds;
+
+    private final Cache<String, NodeSnapshot> snapshots = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    @Autowired
+    public ChefNodeSyncService(IChefClientFactory chefClientFactory, IChefContextFactory contextFactory) {
+        this.chefClientFactory = chefClientFactory;
+        this.contextFactory = contextFactory;
+    }
+
+    @Override
+    public ChefNodeDataReport syncNodes(String tenant, String region) {
+        Assert.notNull(tenant, "tenant can't be null.");
+        Assert.notNull(region, "zone can't be null.");
+
+        return syncNodes(contextFactory.getInstance(tenant, region));
+    }
+
+    @Override
+    public ChefNodeDataReport syncNodes(IChefContext context) {
+        Assert.notNull(context, "context can't be null.");
+
+        IChefClient client = chefClientFactory.getInstance(context);
+        NodeSnapshot snapshot = getSnapshot(context);
+        synchronized (snapshot) {
+            try {
+                long now = System.currentTimeMillis();
+                if (!snapshot.initialized || now - snapshot.lastFullPassMillis >= TimeUnit.MINUTES.toMillis(fullPassIntervalMinutes)) {
+                    loadAll(client, snapshot, now);
+                } else {
+                    loadChanged(client, snapshot, now);
+                }
+                return buildReport(context, snapshot, null);
+            } catch (UncheckedChefClientException e) {
+                LOG.error("Failed to sync nodes of chef server " + context.getUri(), e);
+                return buildReport(context, snapshot, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void resetSnapshot(IChefContext context) {
+        Assert.notNull(context, "context can't be null.");
+        snapshots.invalidate(getSnapshotKey(context));
+    }
+
+    private void loadAll(IChefClient client, NodeSnapshot snapshot, long now) {
+        Map<String, ChefNodeData> nodes = new HashMap<>();
+        try (Stream<NodeDescriptor> rows = search(client, getNodeDataSearchMap(), null)) {
+            for (NodeDescriptor row : (Iterable<NodeDescriptor>) rows::iterator) {
+                ChefNodeData node = toNodeData(row);
+                if (node != null) {
+                    nodes.put(node.getName(), node);
+                }
+            }
+        }
+        snapshot.nodes = nodes;
+        snapshot.watermarkMillis = now;
+        snapshot.lastFullPassMillis = now;
+        snapshot.initialized = true;
+        LOG.info("Loaded {} nodes into snapshot.", nodes.size());
+    }
+
+    /**
+     * Merges nodes whose ohai_time is not older than the previous poll minus the overlap. The watermark is the local
+     * time the previous poll started, so node clocks running ahead can not move it forward. Nodes without ohai_time,
+     * nodes with clocks behind by more than the overlap and deleted nodes are caught up by the next full pass.
+     */
+    private void loadChanged(IChefClient client, NodeSnapshot snapshot, long now) {
+        long from = Math.max(0, TimeUnit.MILLISECONDS.toSeconds(snapshot.watermarkMillis) - watermarkOverlapSeconds);
+        Map<String, String> query = Collections.singletonMap(OHAI_TIME_ATTRIBUTE, String.format(WATERMARK_RANGE_PATTERN, from));
+
+        int changed = 0;
+        try (Stream<NodeDescriptor> rows = search(client, getNodeDataSearchMap(), query)) {
+            for (NodeDescriptor row : (Iterable<NodeDescriptor>) rows::iterator) {
+                ChefNodeData node = toNodeData(row);
+                if (node != null) {
+                    snapshot.nodes.put(node.getName(), node);
+                    changed++;
+                }
+            }
+        }
+        snapshot.watermarkMillis = now;
+        LOG.debug("Merged {} changed nodes into snapshot.", changed);
+    }
+
+    private Stream<NodeDescriptor> search(IChefClient client, Map<String, List<String>> searchMap, Map<String, String> query) {
+        return new NodeSearchPageIterator<>(client, GetNodesStatisticAttributesResult.class, searchMap, query, NODE_SYNC_PAGE_SIZE)
+                .stream();
+    }
+
+    private Map<String, List<String>> getNodeDataSearchMap() {
+        Map<String, List<String>> searchMap = new HashMap<>();
+        searchMap.put("nodeName", Lists.newArrayList("name"));
+        searchMap.put("operationSystemType", Lists.newArrayList("os"));
+        searchMap.put("timestamp", Lists.newArrayList(OHAI_TIME_ATTRIBUTE));
+        return searchMap;
+    }
+
+    private ChefNodeData toNodeData(NodeDescriptor row) {
+        NodeAttributes attributes = row.getAttributes();
+        if (attributes == null || StringUtils.isBlank(attributes.getNodeName())) {
+            return null;
+        }
+        ChefNodeData node = new ChefNodeData();
+        node.setName(attributes.getNodeName());
+        node.setOperationSystemType(attributes.getOperationSystemType());
+        double ohaiTime = toOhaiTime(row);
+        // ohai_time is in seconds, node data keeps milliseconds
+        node.setTimestamp(ohaiTime > 0 ? (long) (ohaiTime * 1000) : null);
+        return node;
+    }
+
+    private double toOhaiTime(NodeDescriptor row) {
+        String timestamp = row.getAttributes().getTimestamp();
+        if (StringUtils.isBlank(timestamp)) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(timestamp);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private ChefNodeDataReport buildReport(IChefContext context, NodeSnapshot snapshot, String errorMessage) {
+        ChefNodeDataReport report = new ChefNodeDataReport();
+        report.setChefUri(context.getUri());
+        report.setTimestamp(System.currentTimeMillis());
+        report.setData(new ArrayList<>(snapshot.nodes.values()));
+        report.setSuccess(errorMessage == null);
+        report.setErrorMessage(errorMessage);
+        return report;
+    }
+
+    private NodeSnapshot getSnapshot(IChefContext context) {
+        try {
+            return snapshots.get(getSnapshotKey(context), NodeSnapshot::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private String getSnapshotKey(IChefContext context) {
+        return context.getUri() + context.getOrganizationResourcePrefix();
+    }
+
+    // guarded by its own monitor
+    private static final class NodeSnapshot {
+        private Map<String, ChefNodeData> nodes = new HashMap<>();
+        // local time the last successful poll started
+        private long watermarkMillis;
+        private long lastFullPassMillis;
+        private boolean initialized;
+    }
+}
@@ -20,12 +20,15 @@ package io.maestro3.chef.service;
 import com.google.common.collect.Lists;
 import io.maestro3.cadf.util.Assert;
 import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.Deadline;
 import io.maestro3.chef.client.command.IChefCommand;
 import io.maestro3.chef.client.command.client.DeleteClientCommand;
 import io.maestro3.chef.client.command.node.DeleteNodeCommand;
 import io.maestro3.chef.client.command.role.GetRoleUrisCommand;
 import io.maestro3.chef.client.command.search.GetNodesAttributesCommand;
 import io.maestro3.chef.client.command.search.NodeDescriptor;
+import io.maestro3.chef.client.command.search.NodeSearchPageIterator;
+import io.maestro3.chef.client.command.search.ParallelNodeSearch;
 import io.maestro3.chef.client.command.search.attributes.GetNodesStatisticAttributesResult;
 import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
 import io.maestro3.chef.client.context.IChefContext;
@@ -36,6 +39,7 @@ import io.maestro3.chef.client.factory.IChefClientFactory;
 import io.maestro3.chef.client.response.IChefResponse;
 import io.maestro3.chef.exception.ChefServerUnexpectedErrorException;
 import io.maestro3.chef.model.ChefConfiguration;
+import io.maestro3.chef.model.ChefConnectionSettings;
 import io.maestro3.chef.model.ChefStrategy;
 import io.maestro3.sdk.internal.util.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
@@ -44,6 +48,7 @@ import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
@@ -52,18 +57,21 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 @Service
 public class ChefService implements IChefService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ChefService.class);
 
-    private static final int NODE_ATTRIBUTE_INFO_LIMIT = 1000;
-
     private final IChefClientFactory chefClientFactory;
     private final IChefContextFactory contextFactory;
     private final IChefConfigurationService chefConfigurationService;
 
+    @Value("${chef.search.parallelism:4}")
+    private int defaultSearchParallelism;
+
     @Autowired
     public ChefService(IChefClientFactory chefClientFactory, IChefContextFactory contextFactory,
                        IChefConfigurationService chefConfigurationService) {
@@ -115,59 +123,84 @@ public class ChefService implements IChefService {
         IChefContext chefContext = contextFactory.getInstance(tenant, region);
         IChefClient client = chefClientFactory.getInstance(chefContext);
 
-        return getNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client);
+        return getNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client, null);
     }
 
     @Override
     public <R extends IGetNodesAttributesResult, T> List<T> getCustomNodeAttributes(Class<R> responseType, ChefConfiguration chefConfiguration, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters)
+        throws ChefClientException {
+        return getCustomNodeAttributes(responseType, chefConfiguration, searchFiendsMap, searchQueryParameters, null);
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> List<T> getCustomNodeAttributes(Class<R> responseType, ChefConfiguration chefConfiguration, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters, Deadline deadline)
         throws ChefClientException {
         Assert.notNull(responseType, "responseType can't be null.");
         IChefContext chefContext = contextFactory.getInstance(chefConfiguration);
         IChefClient client = chefClientFactory.getInstance(chefContext);
 
-        return getNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client);
+        return getNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client, deadline);
     }
 
-    private <R extends IGetNodesAttributesResult, T> List<T> getNodeChefAttributes(Class<R> responseType, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters, IChefContext chefContext, IChefClient client) throws ChefClientException {
-        List<T> results = Lists.newArrayList();
+    @SuppressWarnings("unchecked")
+    private <R extends IGetNodesAttributesResult, T> List<T> getNodeChefAttributes(Class<R> responseType, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters, IChefContext chefContext, IChefClient client, Deadline deadline) throws ChefClientException {
+        if (client == null || chefContext == null) {
+            return Lists.newArrayList();
+        }
+        ParallelNodeSearch<T> search = new ParallelNodeSearch<>(client, (Class<? extends IGetNodesAttributesResult<T>>) responseType,
+            searchFiendsMap, searchQueryParameters, ParallelNodeSearch.DEFAULT_PAGE_SIZE, getSearchParallelism(chefContext), deadline);
+        return search.execute();
+    }
 
-        if (client != null && chefContext != null) {
-            int retrieved = 0;
-            Integer total = 0;
-
-            int retryCount = 5;
-            while (retrieved <= total) {
-                GetNodesAttributesCommand<R> command = new GetNodesAttributesCommand<>(responseType, searchFiendsMap, searchQueryParameters, retrieved, NODE_ATTRIBUTE_INFO_LIMIT);
-
-                IChefResponse<R> response = client.execute(command);
-
-                if (!response.getErrorOccurred()) {
-                    IGetNodesAttributesResult<T> responseGeneralResult = response.getResult();
-                    if (responseGeneralResult != null) {
-                        results.addAll(responseGeneralResult.getResults());
-                        retrieved = results.size();
-                    }
-                } else {
-                    // if retry counter exceeded - return empty response
-                    if (retryCount <= 0) {
-                        throw new ChefClientException(response.getDescription());
-                    }
-                    retryCount--;
-                    LOG.error(response.getDescription());
-                }
+    @Override
+    public Stream<NodeDescriptor> streamDefaultChefNodeAttributes(String tenant, String region) {
+        Assert.notNull(tenant, "tenant can't be null.");
+        Assert.notNull(region, "zone can't be null.");
 
-                if (total == 0) {
-                    total = response.getResult().getTotal();
-                    if (total == null) {
-                        // if chef does not return "total", then forget about pagination and return what we got
-                        break;
-                    }
-                }
+        IChefContext chefContext = contextFactory.getInstance(tenant, region);
+        IChefClient client = chefClientFactory.getInstance(chefContext);
+        return streamNodeChefAttributes(GetNodesStatisticAttributesResult.class, getSearchNodeMap(), null, chefContext, client, null);
+    }
 
-                retrieved += NODE_ATTRIBUTE_INFO_LIMIT;
-            }
+    @Override
+    public <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(Class<R> responseType, String region, String tenant, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        Assert.notNull(responseType, "responseType can't be null.");
+        IChefContext chefContext = contextFactory.getInstance(tenant, region);
+        IChefClient client = chefClientFactory.getInstance(chefContext);
+
+        return streamNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client, null);
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(Class<R> responseType, ChefConfiguration chefConfiguration, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters) {
+        return streamCustomNodeAttributes(responseType, chefConfiguration, searchFiendsMap, searchQueryParameters, null);
+    }
+
+    @Override
+    public <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(Class<R> responseType, ChefConfiguration chefConfiguration, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters, Deadline deadline) {
+        Assert.notNull(responseType, "responseType can't be null.");
+        IChefContext chefContext = contextFactory.getInstance(chefConfiguration);
+        IChefClient client = chefClientFactory.getInstance(chefContext);
+
+        return streamNodeChefAttributes(responseType, searchFiendsMap, searchQueryParameters, chefContext, client, deadline);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends IGetNodesAttributesResult, T> Stream<T> streamNodeChefAttributes(Class<R> responseType, Map<String, List<String>> searchFiendsMap, Map<String, String> searchQueryParameters, IChefContext chefContext, IChefClient client, Deadline deadline) {
+        if (client == null || chefContext == null) {
+            return Stream.empty();
+        }
+        NodeSearchPageIterator<T> pages = new NodeSearchPageIterator<>(client, (Class<? extends IGetNodesAttributesResult<T>>) responseType,
+            searchFiendsMap, searchQueryParameters, ParallelNodeSearch.DEFAULT_PAGE_SIZE, deadline);
+        return pages.stream();
+    }
+
+    private int getSearchParallelism(IChefContext chefContext) {
+        ChefConnectionSettings settings = chefContext.getConnectionSettings();
+        if (settings != null && settings.getSearchParallelism() != null && settings.getSearchParallelism() > 0) {
+            return settings.getSearchParallelism();
         }
-        return results;
+        return defaultSearchParallelism;
     }
 
     @Override
@@ -180,7 +213,7 @@ public class ChefService implements IChefService {
         try {
             IChefContext chefContext = contextFactory.getInstance(chefConfiguration);
             IChefClient chefClient = chefClientFactory.getInstance(chefContext);
-            fillRoles(chefRoles, chefClient);
+            fillRoles(chefRoles, chefClient, null);
         } catch (ChefClientException e) {
             LOG.error("Failed to execute request to obtain chef roles from project chef. Region [" + zoneName + "]", e);
             throw new ChefServerUnexpectedErrorException(e.getMessage());
@@ -188,8 +221,9 @@ public class ChefService implements IChefService {
         return chefRoles;
     }
 
-    private void fillRoles(Set<String> chefRoles, IChefClient chefClient) throws ChefClientException, ChefServerUnexpectedErrorException {
+    private void fillRoles(Set<String> chefRoles, IChefClient chefClient, Deadline deadline) throws ChefClientException, ChefServerUnexpectedErrorException {
         GetRoleUrisCommand command = new GetRoleUrisCommand();
+        command.setDeadline(deadline);
         IChefResponse<Map<String, String>> chefResponse = getAndValidateChefResponse(chefClient, command);
         Set<String> chefRolesRetrieved = getChefRoles(chefResponse);
         if (CollectionUtils.isNotEmpty(chefRolesRetrieved)) {
@@ -199,6 +233,11 @@ public class ChefService implements IChefService {
 
     @Override
     public Set<String> describeChefRolesForServer(String serverId) throws ChefServerUnexpectedErrorException {
+        return describeChefRolesForServer(serverId, null);
+    }
+
+    @Override
+    public Set<String> describeChefRolesForServer(String serverId, Deadline deadline) throws ChefServerUnexpectedErrorException {
         Assert.hasText(serverId, "zoneName cannot be null or empty.");
 
         Set<String> chefRoles = new HashSet<>();
@@ -206,7 +245,7 @@ public class ChefService implements IChefService {
         try {
             IChefContext chefContext = contextFactory.getInstance(chefConfiguration);
             IChefClient chefClient = chefClientFactory.getInstance(chefContext);
-            fillRoles(chefRoles, chefClient);
+            fillRoles(chefRoles, chefClient, deadline);
         } catch (ChefClientException e) {
             LOG.error("Failed to execute request to obtain chef roles from server chef. Server id [" + serverId + "]", e);
             throw new ChefServerUnexpectedErrorException(e.getMessage());
@@ -224,7 +263,7 @@ public class ChefService implements IChefService {
         IChefContext chefContext = contextFactory.getProjectInstance(tenant, region);
         try {
             IChefClient chefClient = chefClientFactory.getInstance(chefContext);
-            fillRoles(chefRoles, chefClient);
+            fillRoles(chefRoles, chefClient, null);
         } catch (ChefClientException e) {
             LOG.error("Failed to execute request to obtain chef roles from project chef. Tenant [" + tenant + "], region [" + region + "]", e);
             throw new ChefServerUnexpectedErrorException(e.getMessage());
@@ -294,16 +333,18 @@ public class ChefService implements IChefService {
     private boolean deleteNode(IChefClient client, String node) {
         if (StringUtils.isNotBlank(node)) {
             try {
-                IChefCommand<NodeEntity> nodeCommand = new DeleteNodeCommand(node);
-                IChefResponse<NodeEntity> nodeResponse = client.execute(nodeCommand);
+                // node and client are independent resources, delete them concurrently
+                CompletableFuture<IChefResponse<NodeEntity>> nodeFuture = client.executeAsync(new DeleteNodeCommand(node));
+                CompletableFuture<IChefResponse<Void>> clientFuture = client.executeAsync(new DeleteClientCommand(node));
+
+                IChefResponse<NodeEntity> nodeResponse = nodeFuture.join();
                 if (nodeResponse.getErrorOccurred()) {
                     LOG.error("Can not delete node from Chef server. Node: {}, Reason: {}, Code: {}", node, nodeResponse.getDescription(), nodeResponse.getCode());
                 }
                 if (nodeResponse.getCode() != HttpStatus.SC_OK) {
                     LOG.error("Unexpected status code while deleting Chef node {}: {}.", node, nodeResponse.getCode());
                 }
-                IChefCommand<Void> clientCommand = new DeleteClientCommand(node);
-                IChefResponse<Void> clientResponse = client.execute(clientCommand);
+                IChefResponse<Void> clientResponse = clientFuture.join();
                 if (clientResponse.getErrorOccurred()) {
                     LOG.error("Can not delete client from Chef server. Client: {}, Reason: {}, Code: {}", node, clientResponse.getDescription(), clientResponse.getCode());
                 }
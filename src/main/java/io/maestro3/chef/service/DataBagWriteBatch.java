@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.model.data.DataBagItemWrite;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
+import io.maestro3.sdk.internal.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Unit of work collecting data bag item writes of one flow. Values put to the same item are merged, later values win,
+ * and each item is written once on {@link #flush()}. Not thread safe, a batch is meant to be used by a single flow.
+ */
+public class DataBagWriteBatch {
+
+    private final IChefDataBagService dataBagService;
+    private final IChefContext context;
+    private final Map<ItemKey, PendingItem> pendingItems = new LinkedHashMap<>();
+
+    DataBagWriteBatch(IChefDataBagService dataBagService, IChefContext context) {
+        Assert.notNull(dataBagService, "dataBagService can't be null.");
+        Assert.notNull(context, "context can't be null.");
+        this.dataBagService = dataBagService;
+        this.context = context;
+    }
+
+    public DataBagWriteBatch put(String dataBag, String item, Map<String, String> data) {
+        return put(dataBag, item, data, false);
+    }
+
+    /**
+     * @param forceRefresh write the item even if the merged content was already written before
+     */
+    public DataBagWriteBatch put(String dataBag, String item, Map<String, String> data, boolean forceRefresh) {
+        Assert.hasText(dataBag, "dataBag can't be null or empty.");
+        Assert.hasText(item, "item can't be null or empty.");
+
+        PendingItem pending = pendingItems.computeIfAbsent(new ItemKey(dataBag, item), key -> new PendingItem());
+        if (data != null) {
+            pending.data.putAll(data);
+        }
+        pending.forceRefresh |= forceRefresh;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return pendingItems.isEmpty();
+    }
+
+    /**
+     * Writes all collected items and clears the batch.
+     *
+     * @return result of each item in the order items were first put
+     */
+    public List<DataBagItemWriteResult> flush() {
+        if (pendingItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DataBagItemWrite> writes = new ArrayList<>(pendingItems.size());
+        for (Map.Entry<ItemKey, PendingItem> entry : pendingItems.entrySet()) {
+            PendingItem pending = entry.getValue();
+            writes.add(new DataBagItemWrite(entry.getKey().dataBag, entry.getKey().item, pending.data, pending.forceRefresh));
+        }
+        pendingItems.clear();
+        return dataBagService.updateOrCreateItems(context, writes);
+    }
+
+    private static final class PendingItem {
+
+        private final Map<String, String> data = new HashMap<>();
+        private boolean forceRefresh;
+    }
+
+    private static final class ItemKey {
+
+        private final String dataBag;
+        private final String item;
+
+        private ItemKey(String dataBag, String item) {
+            this.dataBag = dataBag;
+            this.item = item;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ItemKey that = (ItemKey) o;
+            return dataBag.equals(that.dataBag) && item.equals(that.item);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataBag, item);
+        }
+    }
+}
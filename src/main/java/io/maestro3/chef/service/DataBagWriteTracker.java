@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers keyed hashes of the plain content last written to each data bag item, so writes of unchanged content can be
+ * skipped. Encrypted items can't be compared on chef server side, because every write uses a new IV.
+ * Hashes are kept in memory only and expire after a few minutes, so items changed outside of this service, for example
+ * by another node, are rewritten soon.
+ * <p>
+ * Writes of the same item may overlap. A hash is kept only when no write of the item overlapped the recorded one,
+ * otherwise the content on chef server depends on the order the server applied them, and the item is forgotten.
+ */
+@Component
+public class DataBagWriteTracker {
+
+    private static final char SEPARATOR = '\u0000';
+
+    // key is generated per process, hashes never leave the process so plain content can't be guessed from them
+    private final HashFunction hashFunction;
+    private final Cache<String, WrittenItem> writtenContent;
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final ChefClientMetrics metrics;
+
+    @Autowired
+    public DataBagWriteTracker(ChefClientMetrics metrics,
+                               @Value("${chef.data.bag.write.cache.size:10000}") long cacheSize,
+                               @Value("${chef.data.bag.write.cache.minutes:5}") long cacheMinutes) {
+        this.metrics = metrics;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hashFunction = Hashing.hmacSha256(key);
+        this.writtenContent = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(cacheMinutes, TimeUnit.MINUTES)
+            .build();
+    }
+
+    /**
+     * @return {@code true} if the same content was already written to the item, the skipped write is counted
+     */
+    public boolean skipUnchanged(String serverId, String dataBag, String item, Map<String, String> data) {
+        WrittenItem written = writtenContent.getIfPresent(key(serverId, dataBag, item));
+        if (written != null && written.hash != null && written.hash.equals(hash(data))) {
+            metrics.getDataBagWritesSkipped().inc();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks a write of the item as started, the item is not skipped until the write is recorded.
+     *
+     * @return id of the write to pass to {@link #recordWrite}
+     */
+    public long startWrite(String serverId, String dataBag, String item) {
+        long write = writeSequence.incrementAndGet();
+        writtenContent.put(key(serverId, dataBag, item), new WrittenItem(write, null));
+        return write;
+    }
+
+    /**
+     * Records content of a successfully finished write. If a later write of the item was started meanwhile, only
+     * that write can be recorded, and if it already finished, this write may have replaced its content, so the item
+     * is forgotten.
+     */
+    public void recordWrite(String serverId, String dataBag, String item, long write, Map<String, String> data) {
+        HashCode hash = hash(data);
+        writtenContent.asMap().computeIfPresent(key(serverId, dataBag, item), (key, written) -> {
+            if (written.write == write) {
+                return new WrittenItem(write, hash);
+            }
+            return written.hash == null ? written : null;
+        });
+    }
+
+    public void invalidate(String serverId, String dataBag, String item) {
+        writtenContent.invalidate(key(serverId, dataBag, item));
+    }
+
+    public void invalidateDataBag(String serverId, String dataBag) {
+        String prefix = serverId + SEPARATOR + dataBag + SEPARATOR;
+        writtenContent.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * @return number of writes skipped since start
+     */
+    public long getSkippedWrites() {
+        return metrics.getDataBagWritesSkipped().getCount();
+    }
+
+    private static String key(String serverId, String dataBag, String item) {
+        return serverId + SEPARATOR + dataBag + SEPARATOR + item;
+    }
+
+    private HashCode hash(Map<String, String> data) {
+        Hasher hasher = hashFunction.newHasher();
+        // sorted and length prefixed, so equal maps give equal hashes and entries can't be shifted between each other
+        for (Map.Entry<String, String> entry : new TreeMap<>(data).entrySet()) {
+            if (entry.getValue() != null) {
+                hasher.putInt(entry.getKey().length()).putString(entry.getKey(), StandardCharsets.UTF_8);
+                hasher.putInt(entry.getValue().length()).putString(entry.getValue(), StandardCharsets.UTF_8);
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static final class WrittenItem {
+
+        private final long write;
+        // null while the write is in flight
+        private final HashCode hash;
+
+        private WrittenItem(long write, HashCode hash) {
+            this.write = write;
+            this.hash = hash;
+        }
+    }
+}
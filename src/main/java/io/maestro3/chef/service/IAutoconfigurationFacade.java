@@ -19,11 +19,24 @@ package io.maestro3.chef.service;
 
 
 import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.model.data.AutoconfigurationReport;
 import io.maestro3.sdk.v3.model.instance.SdkInstances;
 import io.maestro3.sdk.v3.request.instance.RunInstanceRequest;
 
 public interface IAutoconfigurationFacade {
-    void autoconfigurationPostprocessing(RunInstanceRequest request, String initiator, String regionName,
+
+    /**
+     * Saves chef instances and creates their data bag, node and role. Instance records are saved concurrently,
+     * the data bag, node and role shared by all instances of the request are written once.
+     * <p>
+     * Failures are not thrown: failure of one instance does not stop the others, and every failure is
+     * reported in the returned report, so callers have to check {@link AutoconfigurationReport#isSuccessful()}.
+     * Data bag items that could not be written fail every instance of the request.
+     * <p>
+     * This replaces the former {@code void ... throws Exception} contract: callers that relied on an exception
+     * to detect a failed post-processing must check the report instead.
+     */
+    AutoconfigurationReport autoconfigurationPostprocessing(RunInstanceRequest request, String initiator, String regionName,
                                          String regionId, String tenantName, String tenantDisplayName,
-                                         IChefContext chefContext, String cloud, SdkInstances instances) throws Exception;
+                                         IChefContext chefContext, String cloud, SdkInstances instances);
 }
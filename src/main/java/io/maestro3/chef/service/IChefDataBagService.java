@@ -18,6 +18,8 @@
 package io.maestro3.chef.service;
 
 import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.model.data.DataBagItemWrite;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
 
 import java.util.List;
 import java.util.Map;
@@ -32,8 +34,32 @@ public interface IChefDataBagService {
 
     void createItem(IChefContext context, String dataBag, String name, Map<String, String> data);
 
+    /**
+     * Writes the item without checking its existence first: item is created, replaced on conflict and its data bag is
+     * created if it does not exist yet. Write is skipped if the same content was already written to the item.
+     * Without data the item is only created, holding its id, and an existing item is kept as it is.
+     */
     void updateOrCreateItem(IChefContext context, String dataBag, String name, Map<String, String> data);
 
+    /**
+     * @param forceRefresh write the item even if its content did not change since the last write
+     */
+    void updateOrCreateItem(IChefContext context, String dataBag, String name, Map<String, String> data, boolean forceRefresh);
+
+    /**
+     * Upserts all items concurrently the same way as {@link #updateOrCreateItem}. Number of concurrent requests is
+     * limited by the in-flight limit of the server client. Items are written independently, so several items with
+     * the same data bag and name must not be passed in one batch.
+     *
+     * @return result of each item in the order of the given items
+     */
+    List<DataBagItemWriteResult> updateOrCreateItems(IChefContext context, List<DataBagItemWrite> items);
+
+    /**
+     * @return new unit of work which merges item writes of one flow and writes each item once on flush
+     */
+    DataBagWriteBatch beginWrites(IChefContext context);
+
     boolean dataBagItemExists(IChefContext context, String dataBag, String name);
 
     void deleteDatabagAndCredentials(IChefContext context, String name);
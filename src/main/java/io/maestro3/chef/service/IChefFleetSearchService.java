@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
+import io.maestro3.chef.model.ChefConfiguration;
+import io.maestro3.chef.model.data.ChefFleetSearchResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the same node search on many chef servers in parallel. Every server has its own timeout, so total latency is
+ * bounded by the slowest server instead of the sum of all of them. The timeout starts when the search is submitted, so
+ * servers waiting for one of the limited search slots time out as well. Failed servers do not fail the whole search.
+ */
+public interface IChefFleetSearchService {
+
+    <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> search(
+            Class<R> responseType,
+            Collection<ChefConfiguration> chefConfigurations,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters);
+
+    /**
+     * Searches chef servers of given regions, every server is searched once even if it serves several regions.
+     */
+    <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> searchRegions(
+            Class<R> responseType,
+            Collection<String> regions,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters);
+
+    /**
+     * Searches chef servers of all regions known to {@link IRegionProvider}.
+     */
+    <R extends IGetNodesAttributesResult, T> ChefFleetSearchResult<T> searchAllRegions(
+            Class<R> responseType,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters);
+}
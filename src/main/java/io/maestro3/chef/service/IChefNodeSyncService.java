@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.model.data.ChefNodeDataReport;
+
+/**
+ * Keeps a local snapshot of node data per chef server and refreshes it incrementally: only nodes that checked in
+ * since the last sync are requested, deleted nodes are detected by a periodic name-only pass.
+ */
+public interface IChefNodeSyncService {
+
+    /**
+     * Brings snapshot of the context server up to date. The first call for a server and a periodic full pass load
+     * all nodes, calls in between merge nodes changed since the previous call.
+     *
+     * @return report with all nodes of the snapshot; if sync fails, the report is not successful and contains the
+     * last known snapshot
+     */
+    ChefNodeDataReport syncNodes(IChefContext context);
+
+    ChefNodeDataReport syncNodes(String tenant, String region);
+
+    /**
+     * Drops snapshot of the context server, so the next sync loads all nodes again.
+     */
+    void resetSnapshot(IChefContext context);
+}
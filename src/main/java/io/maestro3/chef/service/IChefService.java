@@ -17,6 +17,7 @@
 
 package io.maestro3.chef.service;
 
+import io.maestro3.chef.client.command.Deadline;
 import io.maestro3.chef.client.command.search.NodeDescriptor;
 import io.maestro3.chef.client.command.search.attributes.IGetNodesAttributesResult;
 import io.maestro3.chef.client.exception.ChefClientException;
@@ -27,6 +28,7 @@ import io.maestro3.chef.model.ChefStrategy;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface IChefService {
 
@@ -49,10 +51,69 @@ public interface IChefService {
             Map<String, List<String>> searchFiendsMap,
             Map<String, String> searchQueryParameters) throws ChefClientException;
 
+    /**
+     * Variant of {@link #getCustomNodeAttributes(Class, ChefConfiguration, Map, Map)} which must complete by the given
+     * deadline, shared by all pages of the search and their retries.
+     *
+     * @throws io.maestro3.chef.client.exception.ChefDeadlineExceededException if the deadline expired
+     */
+    <R extends IGetNodesAttributesResult, T> List<T> getCustomNodeAttributes(
+            Class<R> responseType,
+            ChefConfiguration chefConfiguration,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters,
+            Deadline deadline) throws ChefClientException;
+
+    /**
+     * Lazy variant of {@link #getDefaultChefNodeAttributes(String, String)} that pages through all nodes, requesting
+     * the next page only when the stream advances. Search failures are thrown as
+     * {@link io.maestro3.chef.client.exception.UncheckedChefClientException} during consumption. The stream should be
+     * closed if it is not consumed to the end.
+     */
+    Stream<NodeDescriptor> streamDefaultChefNodeAttributes(String tenant, String region);
+
+    /**
+     * Lazy variant of {@link #getCustomNodeAttributes(Class, String, String, Map, Map)}, see
+     * {@link #streamDefaultChefNodeAttributes(String, String)}.
+     */
+    <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(
+            Class<R> responseType,
+            String zone,
+            String tenant,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters);
+
+    /**
+     * Lazy variant of {@link #getCustomNodeAttributes(Class, ChefConfiguration, Map, Map)}, see
+     * {@link #streamDefaultChefNodeAttributes(String, String)}.
+     */
+    <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(
+            Class<R> responseType,
+            ChefConfiguration chefConfiguration,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters);
+
+    /**
+     * Variant of {@link #streamCustomNodeAttributes(Class, ChefConfiguration, Map, Map)} which must be consumed by the
+     * given deadline, pages requested after it fail.
+     */
+    <R extends IGetNodesAttributesResult, T> Stream<T> streamCustomNodeAttributes(
+            Class<R> responseType,
+            ChefConfiguration chefConfiguration,
+            Map<String, List<String>> searchFiendsMap,
+            Map<String, String> searchQueryParameters,
+            Deadline deadline);
+
     Set<String> describeDefaultChefRoles(String zoneName) throws ChefServerUnexpectedErrorException;
 
     Set<String> describeChefRolesForServer(String serverId) throws ChefServerUnexpectedErrorException;
 
+    /**
+     * Variant of {@link #describeChefRolesForServer(String)} which must complete by the given deadline, e.g. a few
+     * seconds for interactive calls.
+     */
+    Set<String> describeChefRolesForServer(String serverId, Deadline deadline) throws ChefServerUnexpectedErrorException;
+
     Set<String> describeTenantInRegionChefRoles(String tenant, String region) throws ChefServerUnexpectedErrorException;
 
 }
@@ -17,6 +17,7 @@
 
 package io.maestro3.chef.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.maestro3.chef.client.context.IChefContext;
 import io.maestro3.chef.model.AutoConfigurationState;
 import io.maestro3.chef.model.ChefConfiguration;
@@ -24,6 +25,9 @@ import io.maestro3.chef.model.ChefInstance;
 import io.maestro3.chef.model.InstanceProperty;
 import io.maestro3.chef.model.TenantChefConfiguration;
 import io.maestro3.chef.model.UserData;
+import io.maestro3.chef.model.data.AutoconfigurationReport;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
+import io.maestro3.chef.model.data.InstanceAutoconfigurationResult;
 import io.maestro3.chef.model.role.ChefRole;
 import io.maestro3.chef.util.ChefUtils;
 import io.maestro3.sdk.internal.util.StringUtils;
@@ -33,10 +37,19 @@ import io.maestro3.sdk.v3.request.instance.RunInstanceRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ServerAutoconfigurationFacade implements IAutoconfigurationFacade {
@@ -48,13 +61,16 @@ public class ServerAutoconfigurationFacade implements IAutoconfigurationFacade {
     private ICertTokenService certTokenService;
     private IChefDataBagService chefDataBagService;
     private IUserdataProvisionService userdataProvisionService;
+    // shared by all launches, saves instance records (mongo and cert token) in parallel, makes no chef calls
+    private final ExecutorService executor;
 
     @Autowired
     public ServerAutoconfigurationFacade(IResourceIdGenerator resourceIdGenerator,
                                          IChefTenantConfigProvider chefTenantConfigProvider,
                                          IChefConfigurationService chefConfigurationService,
                                          IChefInstanceService chefInstanceService, ICertTokenService certTokenService,
-                                         IChefDataBagService chefDataBagService, IUserdataProvisionService userdataProvisionService) {
+                                         IChefDataBagService chefDataBagService, IUserdataProvisionService userdataProvisionService,
+                                         @Value("${chef.autoconfiguration.threads:16}") int threads) {
         this.resourceIdGenerator = resourceIdGenerator;
         this.chefTenantConfigProvider = chefTenantConfigProvider;
         this.chefConfigurationService = chefConfigurationService;
@@ -62,42 +78,118 @@ public class ServerAutoconfigurationFacade implements IAutoconfigurationFacade {
         this.certTokenService = certTokenService;
         this.chefDataBagService = chefDataBagService;
         this.userdataProvisionService = userdataProvisionService;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("chef-autoconfiguration-%d")
+                .setDaemon(true)
+                .build());
     }
 
     @Override
-    public void autoconfigurationPostprocessing(RunInstanceRequest request, String initiator, String regionName, String regionId,
-                                                String tenantName, String tenantDisplayName, IChefContext chefContext, String cloud,
-                                                SdkInstances instances) throws Exception {
-        if (request.isInstallChefClient() && StringUtils.isBlank(request.getInitScript())) {
-            for (SdkInstance instance : instances.getSdkInstances()) {
-                LOG.info("Saving chef instance {}", instance.getInstanceId());
-                ChefInstance chefInstance = saveChefInstance(tenantName, regionName, regionId, cloud,
-                        request.getChefProfile(), instance, request.getAdditionalData(), request.getInsanceChefUuid());
-                processDatabagCreation(chefContext, request, tenantName, tenantDisplayName, regionName, cloud, chefInstance, initiator);
+    public AutoconfigurationReport autoconfigurationPostprocessing(RunInstanceRequest request, String initiator, String regionName, String regionId,
+                                                                   String tenantName, String tenantDisplayName, IChefContext chefContext, String cloud,
+                                                                   SdkInstances instances) {
+        if (!request.isInstallChefClient() || StringUtils.isNotBlank(request.getInitScript())) {
+            return AutoconfigurationReport.empty();
+        }
+        long start = System.nanoTime();
+
+        // all instances of one request share the chef instance id and so its data bag, node and role:
+        // only instance records are saved in parallel, the shared chef objects are written once afterwards
+        List<CompletableFuture<SavedInstance>> saves = new ArrayList<>();
+        for (SdkInstance instance : instances.getSdkInstances()) {
+            saves.add(CompletableFuture.supplyAsync(() -> saveInstance(request, regionName, regionId,
+                    tenantName, cloud, instance), executor));
+        }
+        List<SavedInstance> savedInstances = new ArrayList<>(saves.size());
+        ChefInstance lastSaved = null;
+        for (CompletableFuture<SavedInstance> save : saves) {
+            SavedInstance saved = save.join();
+            savedInstances.add(saved);
+            if (saved.chefInstance != null) {
+                lastSaved = saved.chefInstance;
+            }
+        }
+
+        long sharedStart = System.nanoTime();
+        Map<String, Long> sharedStepMillis = new LinkedHashMap<>();
+        String sharedError = null;
+        if (lastSaved != null) {
+            try {
+                // the last launched instance wins, as it did when every instance rewrote the same items
+                sharedError = processDatabagCreation(chefContext, request, tenantName, tenantDisplayName, regionName, cloud,
+                        lastSaved, initiator, sharedStepMillis);
+            } catch (Exception e) {
+                LOG.error("Autoconfiguration post-processing failed for chef instance " + lastSaved.getInstanceId(), e);
+                sharedError = e.getMessage() == null ? e.toString() : e.getMessage();
+            }
+        }
+        long sharedMillis = elapsedMillis(sharedStart);
+
+        List<InstanceAutoconfigurationResult> instanceResults = new ArrayList<>(savedInstances.size());
+        for (SavedInstance saved : savedInstances) {
+            instanceResults.add(saved.toResult(sharedStepMillis, sharedMillis, sharedError));
+        }
+        AutoconfigurationReport report = new AutoconfigurationReport(instanceResults, elapsedMillis(start));
+        if (report.isSuccessful()) {
+            LOG.info("Autoconfiguration post-processing finished: {}", report);
+        } else {
+            LOG.error("Autoconfiguration post-processing finished with failures: {}", report);
+        }
+        return report;
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    private SavedInstance saveInstance(RunInstanceRequest request, String regionName, String regionId, String tenantName,
+                                       String cloud, SdkInstance instance) {
+        long start = System.nanoTime();
+        try {
+            LOG.info("Saving chef instance {}", instance.getInstanceId());
+            ChefInstance chefInstance = saveChefInstance(tenantName, regionName, regionId, cloud,
+                    request.getChefProfile(), instance, request.getAdditionalData(), request.getInsanceChefUuid());
+            if (chefInstance == null) {
+                throw new IllegalArgumentException("ChefInstance can not be null");
             }
+            return new SavedInstance(instance.getInstanceId(), chefInstance, null, elapsedMillis(start));
+        } catch (Exception e) {
+            LOG.error("Autoconfiguration post-processing failed for instance " + instance.getInstanceId(), e);
+            String error = e.getMessage() == null ? e.toString() : e.getMessage();
+            return new SavedInstance(instance.getInstanceId(), null, error, elapsedMillis(start));
         }
     }
 
-    private void processDatabagCreation(IChefContext chefContext, RunInstanceRequest request, String tenant,
-                                        String tenantDisplayName, String region, String cloud,
-                                        ChefInstance chefInstance, String owner) {
+    /**
+     * @return description of data bag items that could not be written, {@code null} if all of them were written
+     */
+    private String processDatabagCreation(IChefContext chefContext, RunInstanceRequest request, String tenant,
+                                          String tenantDisplayName, String region, String cloud,
+                                          ChefInstance chefInstance, String owner, Map<String, Long> stepMillis) {
         if (chefInstance == null) {
             throw new IllegalArgumentException("ChefInstance can not be null");
         }
         String instanceChefUUID = chefInstance.getInstanceId();
         LOG.info("Processing databag for instance {}", instanceChefUUID);
-        if (!chefDataBagService.dataBagExists(chefContext, instanceChefUUID)) {
-            LOG.info("Creating databag for instance {}", instanceChefUUID);
-            chefDataBagService.createDataBag(chefContext, instanceChefUUID);
-        }
+        long stepStart = System.nanoTime();
+        // creation of an existing data bag is a harmless conflict, so no existence check is needed
+        LOG.info("Creating databag for instance {}", instanceChefUUID);
+        chefDataBagService.createDataBag(chefContext, instanceChefUUID);
+        stepMillis.put("databag", elapsedMillis(stepStart));
         Map<String, String> commonParams = chefInstanceService.getCommonDatabag(tenant, tenantDisplayName,
                 region, instanceChefUUID, owner, cloud);
         String chefProfile = request.getChefProfile();
         if (StringUtils.isNotBlank(chefProfile)) {
             commonParams.put(UserData.ROLE, chefProfile);
         }
+        // the base item is written before the node gets its roles, so a chef run started by the new node finds it
         LOG.info("Updating common databag item for instance {}", instanceChefUUID);
-        chefDataBagService.updateOrCreateItem(chefContext, instanceChefUUID, ChefRole.BASE.getDataBagItemName(), commonParams);
+        stepStart = System.nanoTime();
+        DataBagWriteBatch writes = chefDataBagService.beginWrites(chefContext);
+        writes.put(instanceChefUUID, ChefRole.BASE.getDataBagItemName(), commonParams);
+        List<DataBagItemWriteResult> writeResults = new ArrayList<>(writes.flush());
+        stepMillis.put("base", elapsedMillis(stepStart));
 
         Map<String, String> serviceProperties = userdataProvisionService.provideUserdataProperties(tenant, region, chefInstance);
 
@@ -105,12 +197,31 @@ public class ServerAutoconfigurationFacade implements IAutoconfigurationFacade {
             LOG.info("Updating chef roles, creating profile items for {}", instanceChefUUID);
             Map<String, String> dataBagMapping = chefContext.getDataBagMapping();
             String[] roles = new String[]{ChefRole.BASE.getName(), chefProfile};
+            stepStart = System.nanoTime();
             chefDataBagService.createNode(chefContext, instanceChefUUID);
             chefDataBagService.pushChefRole(chefContext, instanceChefUUID, roles);
+            stepMillis.put("node", elapsedMillis(stepStart));
             String dataBagName = dataBagMapping.getOrDefault(chefProfile, chefProfile);
-            chefDataBagService.updateOrCreateItem(chefContext, instanceChefUUID, dataBagName, request.getAdditionalData());
-            chefDataBagService.updateOrCreateItem(chefContext, instanceChefUUID, dataBagName, serviceProperties);
+            // both parts go to the same item, merged values are written once instead of the second write replacing the first
+            writes.put(instanceChefUUID, dataBagName, request.getAdditionalData());
+            writes.put(instanceChefUUID, dataBagName, serviceProperties);
+            LOG.info("Writing profile databag item for instance {}", instanceChefUUID);
+            stepStart = System.nanoTime();
+            writeResults.addAll(writes.flush());
+            stepMillis.put("items", elapsedMillis(stepStart));
         }
+        List<String> failedItems = new ArrayList<>();
+        for (DataBagItemWriteResult result : writeResults) {
+            if (!result.isSuccess()) {
+                LOG.error("Could not write databag item {} for instance {}: {}", result.getName(), instanceChefUUID, result.getError());
+                failedItems.add(result.getName() + ": " + result.getError());
+            }
+        }
+        return failedItems.isEmpty() ? null : "Could not write databag items " + failedItems;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
     private ChefInstance saveChefInstance(String tenant, String region, String regionId, String cloud, String chefProfile,
@@ -159,4 +270,29 @@ public class ServerAutoconfigurationFacade implements IAutoconfigurationFacade {
         certTokenService.provideTokenAccessToChefCertificates(tenant, instance);
         return instance;
     }
+
+    private static final class SavedInstance {
+        private final String instanceId;
+        private final ChefInstance chefInstance;
+        private final String error;
+        private final long saveMillis;
+
+        private SavedInstance(String instanceId, ChefInstance chefInstance, String error, long saveMillis) {
+            this.instanceId = instanceId;
+            this.chefInstance = chefInstance;
+            this.error = error;
+            this.saveMillis = saveMillis;
+        }
+
+        private InstanceAutoconfigurationResult toResult(Map<String, Long> sharedStepMillis, long sharedMillis, String sharedError) {
+            Map<String, Long> stepMillis = new LinkedHashMap<>();
+            stepMillis.put("save", saveMillis);
+            if (chefInstance == null) {
+                return new InstanceAutoconfigurationResult(instanceId, false, error, saveMillis, stepMillis);
+            }
+            stepMillis.putAll(sharedStepMillis);
+            return new InstanceAutoconfigurationResult(instanceId, sharedError == null, sharedError,
+                    saveMillis + sharedMillis, stepMillis);
+        }
+    }
 }
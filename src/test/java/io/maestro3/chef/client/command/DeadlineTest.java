@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.command;
+
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    @Test
+    public void remainingTimeDecreasesToExpiry() throws Exception {
+        Deadline deadline = Deadline.after(50, TimeUnit.MILLISECONDS);
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() <= 50);
+        assertTrue(deadline.remainingMillis() > 0);
+
+        TimeUnit.MILLISECONDS.sleep(80);
+
+        assertTrue(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() <= 0);
+    }
+
+    @Test
+    public void checkPassesBeforeExpiry() throws Exception {
+        Deadline.after(Duration.ofMinutes(1)).check("test");
+    }
+
+    @Test
+    public void checkFailsAfterExpiry() throws Exception {
+        Deadline deadline = Deadline.after(1, TimeUnit.MILLISECONDS);
+        TimeUnit.MILLISECONDS.sleep(10);
+        try {
+            deadline.check("test");
+            fail("ChefDeadlineExceededException expected");
+        } catch (ChefDeadlineExceededException e) {
+            assertTrue(e.getMessage().contains("test"));
+        }
+    }
+
+    @Test
+    public void minPicksEarlierDeadline() {
+        Deadline earlier = Deadline.after(1, TimeUnit.SECONDS);
+        Deadline later = Deadline.after(1, TimeUnit.MINUTES);
+
+        assertSame(earlier, earlier.min(later));
+        assertSame(earlier, later.min(earlier));
+        assertSame(later, later.min(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timeoutMustBePositive() {
+        Deadline.after(0, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.client.command.search;
+
+import io.maestro3.chef.client.command.search.attributes.GetNodesStatisticAttributesResult;
+import io.maestro3.chef.client.exception.UncheckedChefClientException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NodeSearchPageIteratorTest {
+
+    private StubChefSearchServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubChefSearchServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void onlyNextPageIsPrefetched() throws Exception {
+        List<String> names = putNodes(25);
+        NodeSearchPageIterator<NodeDescriptor> pages = iterator();
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertTrue(server.getRequestedStarts().isEmpty());
+
+        assertEquals(names.subList(0, 10), ParallelNodeSearchTest.namesOf(pages.next()));
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(Arrays.asList(0, 10), server.getRequestedStarts());
+
+        assertEquals(names.subList(10, 20), ParallelNodeSearchTest.namesOf(pages.next()));
+        assertEquals(names.subList(20, 25), ParallelNodeSearchTest.namesOf(pages.next()));
+        assertFalse(pages.hasNext());
+        assertEquals(Arrays.asList(0, 10, 20), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void streamReturnsRowsInSortOrder() {
+        List<String> names = putNodes(25);
+
+        try (Stream<NodeDescriptor> rows = iterator().stream()) {
+            assertEquals(names, rows.map(row -> row.getAttributes().getNodeName()).collect(Collectors.toList()));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void missingTotalStopsAfterFirstPage() {
+        List<String> names = putNodes(25);
+        server.setReportTotal(false);
+
+        try (Stream<NodeDescriptor> rows = iterator().stream()) {
+            assertEquals(names.subList(0, 10), rows.map(row -> row.getAttributes().getNodeName()).collect(Collectors.toList()));
+        }
+        assertEquals(Collections.singletonList(0), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void closingStreamAbortsPrefetchedPage() throws Exception {
+        putNodes(25);
+        server.slowPage(10, 3000);
+
+        try (Stream<NodeDescriptor> rows = iterator().stream()) {
+            assertTrue(rows.findFirst().isPresent());
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(server.isAborted(10));
+        assertEquals(Arrays.asList(0, 10), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void failedPageIsThrownWhenReached() {
+        putNodes(25);
+        server.failPage(10);
+        NodeSearchPageIterator<NodeDescriptor> pages = iterator();
+        pages.next();
+
+        try {
+            pages.hasNext();
+            fail("UncheckedChefClientException expected");
+        } catch (UncheckedChefClientException e) {
+            // expected
+        }
+        assertFalse(pages.hasNext());
+    }
+
+    private NodeSearchPageIterator<NodeDescriptor> iterator() {
+        return new NodeSearchPageIterator<>(server.client(16), GetNodesStatisticAttributesResult.class, Collections.emptyMap(),
+                null, 10);
+    }
+
+    private List<String> putNodes(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = String.format("node-%03d", i);
+            server.putNode(name, null);
+            names.add(name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.client.command.search;
+
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.search.attributes.GetNodesStatisticAttributesResult;
+import io.maestro3.chef.client.exception.ChefClientException;
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelNodeSearchTest {
+
+    private StubChefSearchServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubChefSearchServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void pagesAreReassembledInSortOrder() throws Exception {
+        List<String> names = putNodes(95);
+        // later pages answer first
+        server.slowPage(10, 300);
+        server.slowPage(20, 200);
+
+        List<NodeDescriptor> rows = search(4, null).execute();
+
+        assertEquals(names, namesOf(rows));
+        List<Integer> starts = new ArrayList<>(server.getRequestedStarts());
+        Collections.sort(starts);
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60, 70, 80, 90), starts);
+        assertTrue(server.getMaxInFlight() <= 4);
+    }
+
+    @Test(timeout = 10000)
+    public void singlePageIsNotSplit() throws Exception {
+        List<String> names = putNodes(10);
+
+        assertEquals(names, namesOf(search(4, null).execute()));
+        assertEquals(Collections.singletonList(0), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void missingTotalReturnsFirstPage() throws Exception {
+        List<String> names = putNodes(25);
+        server.setReportTotal(false);
+
+        assertEquals(names.subList(0, 10), namesOf(search(4, null).execute()));
+        assertEquals(Collections.singletonList(0), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void failedPageFailsSearchAndAbortsOtherPages() throws Exception {
+        putNodes(40);
+        server.slowPage(10, 3000);
+        server.failPage(20);
+
+        try {
+            search(4, null).execute();
+            fail("ChefClientException expected");
+        } catch (ChefClientException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Bad request"));
+        }
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(server.isAborted(10));
+    }
+
+    @Test(timeout = 10000)
+    public void expiredDeadlineFailsSearch() throws Exception {
+        putNodes(40);
+        server.slowPage(0, 1000);
+
+        try {
+            search(4, Deadline.after(300, TimeUnit.MILLISECONDS)).execute();
+            fail("ChefDeadlineExceededException expected");
+        } catch (ChefDeadlineExceededException e) {
+            // expected
+        }
+        assertEquals(Collections.singletonList(0), server.getRequestedStarts());
+    }
+
+    @Test(timeout = 10000)
+    public void cancelledSearchAbortsPagesInFlight() throws Exception {
+        putNodes(40);
+        server.slowPage(0, 3000);
+        CompletableFuture<List<NodeDescriptor>> search = search(4, null).executeAsync();
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        search.cancel(true);
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(server.isAborted(0));
+        assertEquals(Collections.singletonList(0), server.getRequestedStarts());
+    }
+
+    private ParallelNodeSearch<NodeDescriptor> search(int parallelism, Deadline deadline) {
+        return new ParallelNodeSearch<>(server.client(16), GetNodesStatisticAttributesResult.class, Collections.emptyMap(),
+                null, 10, parallelism, deadline);
+    }
+
+    private List<String> putNodes(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = String.format("node-%03d", i);
+            server.putNode(name, null);
+            names.add(name);
+        }
+        return names;
+    }
+
+    static List<String> namesOf(List<NodeDescriptor> rows) {
+        List<String> names = new ArrayList<>();
+        for (NodeDescriptor row : rows) {
+            names.add(row.getAttributes().getNodeName());
+        }
+        return names;
+    }
+}
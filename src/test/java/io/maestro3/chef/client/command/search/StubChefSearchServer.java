@@ -0,0 +1,291 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.client.command.search;
+
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.context.ChefContextType;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.impl.ChefContext;
+import io.maestro3.chef.client.factory.ChefClientAttributes;
+import io.maestro3.chef.client.factory.IChefClientFactory;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClientImpl;
+import io.maestro3.chef.client.impl.ChefClient;
+import io.maestro3.chef.client.utils.EnsureBouncyCastle;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stub of chef node search for tests. Nodes are kept in memory sorted by name and returned in pages the way
+ * chef returns them; single pages can be made slow or failing. Range queries on ohai_time are evaluated, nodes without
+ * ohai_time never match them.
+ */
+public class StubChefSearchServer implements AutoCloseable {
+
+    private static final String SEARCH_PATH = "/organizations/org/search/node";
+    private static final String OHAI_TIME_RANGE = "ohai_time:[";
+
+    private final NavigableMap<String, Map<String, String>> nodes = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Long> slowStarts = new ConcurrentHashMap<>();
+    private final Set<Integer> failingStarts = ConcurrentHashMap.newKeySet();
+    private final List<Integer> requestedStarts = new CopyOnWriteArrayList<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final Set<Integer> abortedStarts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean reportTotal = true;
+
+    private final HttpServer server;
+    private final ExecutorService serverExecutor;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService asyncExecutor;
+    private final ChefContext context;
+
+    public StubChefSearchServer() throws Exception {
+        // chef signs requests with raw RSA signature, which only bouncy castle provides
+        EnsureBouncyCastle.ensure();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(SEARCH_PATH, this::handle);
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        httpClient = HttpClients.custom()
+                .setMaxConnTotal(16)
+                .setMaxConnPerRoute(16)
+                .build();
+        asyncExecutor = Executors.newFixedThreadPool(4);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        context = new ChefContext()
+                .setHost("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .setServerId("server")
+                .setChefOrganization("org")
+                .setUsername("user")
+                .setChefContextType(ChefContextType.ZONE)
+                .setAuthenticationKey(generator.generateKeyPair().getPrivate())
+                .setChefVersion("12")
+                .setVersion(1);
+    }
+
+    public IChefContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return client without retries, hedging and breakers, so every page is requested exactly once
+     */
+    public ChefClient client(int maxInFlight) {
+        java.net.http.HttpClient jdkClient = java.net.http.HttpClient.newBuilder()
+                .executor(asyncExecutor)
+                .build();
+        return new ChefClient(httpClient, new SimpleAsyncHttpClientImpl(jdkClient, Duration.ofSeconds(30)), context,
+                maxInFlight, null, null, null, null, null, null);
+    }
+
+    /**
+     * @return factory handing out the same client for every context
+     */
+    public IChefClientFactory clientFactory(IChefClient client) {
+        return new IChefClientFactory() {
+            @Override
+            public IChefClient getInstance(IChefContext chefContext) {
+                return client;
+            }
+
+            @Override
+            public IChefClient getAdminInstance(IChefContext chefContext, ChefClientAttributes attributes) {
+                return client;
+            }
+
+            @Override
+            public Map<ChefContextType, CacheStats> getCacheStats() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public CacheStats getAdminCacheStats() {
+                return new CacheStats(0, 0, 0, 0, 0, 0);
+            }
+        };
+    }
+
+    /**
+     * @param ohaiTimeSeconds null for a node which has not completed a chef run yet
+     */
+    public void putNode(String name, Long ohaiTimeSeconds) {
+        Map<String, String> data = new HashMap<>();
+        data.put("nodeName", name);
+        data.put("operationSystemType", "linux");
+        if (ohaiTimeSeconds != null) {
+            data.put("timestamp", String.valueOf(ohaiTimeSeconds));
+        }
+        nodes.put(name, data);
+    }
+
+    public void removeNode(String name) {
+        nodes.remove(name);
+    }
+
+    /**
+     * Response of the page starting at given row trickles for given time, so an aborted request is noticed.
+     */
+    public void slowPage(int start, long millis) {
+        slowStarts.put(start, millis);
+    }
+
+    public void failPage(int start) {
+        failingStarts.add(start);
+    }
+
+    public void setReportTotal(boolean reportTotal) {
+        this.reportTotal = reportTotal;
+    }
+
+    public List<Integer> getRequestedStarts() {
+        return new ArrayList<>(requestedStarts);
+    }
+
+    public List<String> getQueries() {
+        return new ArrayList<>(queries);
+    }
+
+    public boolean isAborted(int start) {
+        return abortedStarts.contains(start);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        httpClient.close();
+        asyncExecutor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Map<String, String> parameters = new HashMap<>();
+            for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+                int separator = parameter.indexOf('=');
+                parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+            }
+            String query = parameters.get("q");
+            int start = Integer.parseInt(parameters.get("start"));
+            int rows = Integer.parseInt(parameters.get("rows"));
+            queries.add(query);
+            requestedStarts.add(start);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (failingStarts.contains(start)) {
+                respond(exchange, HttpStatus.SC_BAD_REQUEST, "{\"error\":[\"page " + start + " failed\"]}", 0);
+                return;
+            }
+            List<Map<String, String>> matching = new ArrayList<>();
+            for (Map<String, String> node : nodes.values()) {
+                if (matches(query, node)) {
+                    matching.add(node);
+                }
+            }
+            List<Map<String, Object>> page = new ArrayList<>();
+            for (Map<String, String> node : matching.subList(Math.min(start, matching.size()), Math.min(start + rows, matching.size()))) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("url", "https://chef/organizations/org/nodes/" + node.get("nodeName"));
+                row.put("data", node);
+                page.add(row);
+            }
+            Map<String, Object> body = new HashMap<>();
+            body.put("start", start);
+            body.put("rows", page);
+            if (reportTotal) {
+                body.put("total", matching.size());
+            }
+            respond(exchange, HttpStatus.SC_OK, new Gson().toJson(body), slowStarts.getOrDefault(start, 0L));
+        } catch (IOException e) {
+            // client closed the connection
+            abortedStarts.add(Integer.parseInt(exchange.getRequestURI().getQuery().replaceAll(".*&start=(\\d+).*", "$1")));
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static boolean matches(String query, Map<String, String> node) {
+        if (!query.startsWith(OHAI_TIME_RANGE)) {
+            return true;
+        }
+        long from = Long.parseLong(query.substring(OHAI_TIME_RANGE.length(), query.indexOf(' ')));
+        String ohaiTime = node.get("timestamp");
+        return ohaiTime != null && Long.parseLong(ohaiTime) >= from;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body, long trickleMillis) throws IOException {
+        exchange.sendResponseHeaders(code, 0);
+        OutputStream out = exchange.getResponseBody();
+        // leading whitespace keeps the body valid json while it trickles
+        for (long waited = 0; waited < trickleMillis; waited += 50) {
+            out.write(' ');
+            out.flush();
+            sleep(50);
+        }
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+        out.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.factory.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import io.maestro3.chef.client.context.impl.ChefContext;
+import io.maestro3.chef.client.http.client.ICloseableHttpClientFactory;
+import io.maestro3.chef.client.http.client.Request;
+import io.maestro3.chef.client.http.client.RequestBuilder;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClient;
+import io.maestro3.chef.client.http.client.serialization.Deserializer;
+import io.maestro3.chef.model.ChefConnectionSettings;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ChefConnectionPoolManagerTest {
+
+    private final ChefConnectionPoolManager poolManager = new ChefConnectionPoolManager();
+    private final SystemHttpClientFactory httpClientFactory = new SystemHttpClientFactory();
+
+    @Before
+    public void setUp() throws Exception {
+        set("defaultMaxConnections", 20);
+        set("defaultKeepAliveSeconds", 60);
+        set("defaultIdleTimeoutSeconds", 30);
+        set("defaultValidateAfterInactivityMillis", 2000);
+        set("defaultConnectTimeoutMillis", 30000);
+        set("defaultSocketTimeoutMillis", 120000);
+        set("asyncThreads", 2);
+        set("asyncRequestTimeoutSeconds", 10);
+        set("httpClientFactory", httpClientFactory);
+        poolManager.init();
+    }
+
+    @After
+    public void tearDown() {
+        poolManager.destroy();
+    }
+
+    @Test
+    public void poolIsReusedWhileSettingsStayTheSame() {
+        CloseableHttpClient first = poolManager.getHttpClient(context("server", "https://chef.example.com/", settings(10)));
+        CloseableHttpClient second = poolManager.getHttpClient(context("server", "https://chef.example.com/", settings(10)));
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void poolIsRebuiltWhenSettingsChange() {
+        CloseableHttpClient first = poolManager.getHttpClient(context("server", "https://chef.example.com/", settings(10)));
+        ChefContext changed = context("server", "https://chef.example.com/", settings(20));
+        CloseableHttpClient second = poolManager.getHttpClient(changed);
+
+        assertNotSame(first, second);
+        assertEquals(20, poolManager.getRequestConfig(changed).getSocketTimeout());
+    }
+
+    @Test
+    public void poolIsRebuiltWhenServerMoves() {
+        CloseableHttpClient first = poolManager.getHttpClient(context("server", "https://chef.example.com/", null));
+        CloseableHttpClient second = poolManager.getHttpClient(context("server", "https://chef2.example.com/", null));
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void serversHaveSeparatePools() {
+        CloseableHttpClient first = poolManager.getHttpClient(context("first", "https://chef.example.com/", null));
+        CloseableHttpClient second = poolManager.getHttpClient(context("second", "https://chef2.example.com/", null));
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void asyncClientIsRebuiltWithPool() {
+        SimpleAsyncHttpClient first = poolManager.getAsyncHttpClient(context("server", "https://chef.example.com/", settings(10)));
+        SimpleAsyncHttpClient same = poolManager.getAsyncHttpClient(context("server", "https://chef.example.com/", settings(10)));
+        SimpleAsyncHttpClient changed = poolManager.getAsyncHttpClient(context("server", "https://chef.example.com/", settings(20)));
+
+        assertSame(first, same);
+        assertNotSame(first, changed);
+    }
+
+    @Test(timeout = 10000)
+    public void asyncRequestsGoThroughProxyOfFactory() throws Exception {
+        List<String> proxiedUris = new CopyOnWriteArrayList<>();
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        proxy.createContext("/", exchange -> {
+            // proxy receives the absolute uri of the chef server
+            proxiedUris.add(exchange.getRequestURI().toString());
+            byte[] body = "proxied".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        proxy.start();
+        try {
+            httpClientFactory.proxy = new HttpHost("127.0.0.1", proxy.getAddress().getPort());
+            ChefContext context = context("server", "http://chef.invalid/", null);
+            Request request = new RequestBuilder()
+                    .toUri("organizations/org/nodes")
+                    .get()
+                    .as(String.class)
+                    .deserializer(new Deserializer() {
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public <T> T deserialize(Type responseType, HttpResponse response) throws Exception {
+                            return (T) EntityUtils.toString(response.getEntity());
+                        }
+                    })
+                    .create();
+
+            Object body = poolManager.getAsyncHttpClient(context).execute(context.getUri(), request).get(5, TimeUnit.SECONDS);
+
+            assertEquals("proxied", body);
+            assertEquals(1, proxiedUris.size());
+            assertEquals("http://chef.invalid/organizations/org/nodes", proxiedUris.get(0));
+        } finally {
+            proxy.stop(0);
+        }
+    }
+
+    @Test
+    public void missingSettingsUseDefaults() {
+        RequestConfig config = poolManager.getRequestConfig(context("server", "https://chef.example.com/", null));
+
+        assertEquals(30000, config.getConnectTimeout());
+        assertEquals(120000, config.getSocketTimeout());
+    }
+
+    private static ChefContext context(String serverId, String uri, ChefConnectionSettings settings) {
+        return new ChefContext()
+                .setServerId(serverId)
+                .setHost(uri)
+                .setConnectionSettings(settings);
+    }
+
+    private static ChefConnectionSettings settings(int socketTimeoutMillis) {
+        ChefConnectionSettings settings = new ChefConnectionSettings();
+        settings.setSocketTimeoutMillis(socketTimeoutMillis);
+        return settings;
+    }
+
+    private void set(String name, Object value) throws Exception {
+        Field field = ChefConnectionPoolManager.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(poolManager, value);
+    }
+
+    private static final class SystemHttpClientFactory implements ICloseableHttpClientFactory {
+
+        private HttpHost proxy;
+
+        @Override
+        public HttpClient getHttpClient() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpClient getCountedHttpClient(String clientName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpClient getHttpClient(RequestConfig config) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpClient getHttpClient(boolean addFakeFactory) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SSLContext getSslContext() {
+            return SSLContexts.createSystemDefault();
+        }
+
+        @Override
+        public HttpHost getProxy() {
+            return proxy;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.handler;
+
+import io.maestro3.chef.client.utils.ChefUtils;
+import io.maestro3.chef.client.utils.EnsureBouncyCastle;
+
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares signing of authentication headers by {@link ChefRequestSigner} with the former per request signing through
+ * {@link ChefUtils}, on one thread and under contention. Not a test, run it manually:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.maestro3.chef.client.handler.ChefRequestSignerBenchmark -Dexec.args="8 5"
+ * </pre>
+ * Arguments are the maximal number of threads, doubled from one, and seconds of every measurement. Each variant is
+ * warmed up before it is measured, results are printed as operations per second.
+ */
+public final class ChefRequestSignerBenchmark {
+
+    private static final int KEY_SIZE = 2048;
+    private static final int DISTINCT_REQUESTS = 64;
+
+    private ChefRequestSignerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        EnsureBouncyCastle.ensure();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(KEY_SIZE);
+        Key key = generator.generateKeyPair().getPrivate();
+        ChefRequestSigner signer = new ChefRequestSigner(key);
+
+        String[] authenticationStrings = new String[DISTINCT_REQUESTS];
+        for (int request = 0; request < DISTINCT_REQUESTS; request++) {
+            authenticationStrings[request] = ChefRequestSignerTest.authenticationString(request);
+        }
+
+        Operation utils = request -> {
+            String authenticationString = authenticationStrings[request % DISTINCT_REQUESTS];
+            ChefUtils.getHash(authenticationString);
+            return ChefUtils.splitHeaders(ChefUtils.signAuthenticationString(authenticationString, key)).length;
+        };
+        Operation requestSigner = request -> {
+            String authenticationString = authenticationStrings[request % DISTINCT_REQUESTS];
+            signer.hash(authenticationString);
+            signer.getTimestamp();
+            return signer.sign(authenticationString).length;
+        };
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // warm up both variants before either is measured
+            run(utils, threads, seconds);
+            run(requestSigner, threads, seconds);
+            double utilsRate = run(utils, threads, seconds);
+            double signerRate = run(requestSigner, threads, seconds);
+            System.out.println(String.format(Locale.ROOT, "threads=%-3d ChefUtils=%10.1f ops/s   ChefRequestSigner=%10.1f ops/s   x%.2f",
+                    threads, utilsRate, signerRate, signerRate / utilsRate));
+        }
+    }
+
+    private static double run(Operation operation, int threads, long seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                results.add(executor.submit(() -> {
+                    long operations = 0;
+                    // result is consumed, so the work can't be eliminated as dead code
+                    long blackhole = 0;
+                    while (System.nanoTime() < end) {
+                        blackhole += operation.execute((int) operations);
+                        operations++;
+                    }
+                    return new long[]{operations, blackhole};
+                }));
+            }
+            long operations = 0;
+            for (Future<long[]> result : results) {
+                operations += result.get()[0];
+            }
+            return operations / (double) seconds;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Operation {
+        int execute(int request) throws Exception;
+    }
+}
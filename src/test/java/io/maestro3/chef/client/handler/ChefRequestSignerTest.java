@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.handler;
+
+import io.maestro3.chef.client.utils.ChefUtils;
+import io.maestro3.chef.client.utils.EnsureBouncyCastle;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChefRequestSignerTest {
+
+    private static PrivateKey privateKey;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        EnsureBouncyCastle.ensure();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = generator.generateKeyPair().getPrivate();
+    }
+
+    @Test
+    public void headersAreSameAsSignedByUtils() throws Exception {
+        ChefRequestSigner signer = new ChefRequestSigner(privateKey);
+
+        for (String authenticationString : Arrays.asList("", "a", authenticationString(1), authenticationString(2))) {
+            String[] expected = ChefUtils.splitHeaders(ChefUtils.signAuthenticationString(authenticationString, privateKey));
+            // reused signature must give the same result as a fresh one every time
+            assertTrue(Arrays.equals(expected, signer.sign(authenticationString)));
+            assertTrue(Arrays.equals(expected, signer.sign(authenticationString)));
+        }
+    }
+
+    @Test
+    public void hashIsSameAsHashedByUtils() throws Exception {
+        ChefRequestSigner signer = new ChefRequestSigner(privateKey);
+
+        assertEquals(ChefUtils.getHash("/organizations/org/nodes/node"), signer.hash("/organizations/org/nodes/node"));
+    }
+
+    @Test
+    public void timestampHasChefFormat() {
+        String timestamp = new ChefRequestSigner(privateKey).getTimestamp();
+
+        assertTrue(timestamp, timestamp.matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z"));
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentSigningGivesSameHeaders() throws Exception {
+        ChefRequestSigner signer = new ChefRequestSigner(privateKey);
+        ExecutorService signers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                results.add(signers.submit(() -> {
+                    for (int request = 0; request < 20; request++) {
+                        String authenticationString = authenticationString(request);
+                        String[] expected = ChefUtils.splitHeaders(
+                                ChefUtils.signAuthenticationString(authenticationString, privateKey));
+                        assertTrue(Arrays.equals(expected, signer.sign(authenticationString)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            signers.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void publicKeyIsRejected() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        new ChefRequestSigner(generator.generateKeyPair().getPublic());
+    }
+
+    static String authenticationString(int request) {
+        return "Method:GET\n"
+                + "Hashed Path:" + ChefUtils.encodeHash(ChefUtils.getHashDigest()
+                .digest(("/organizations/org/nodes/node-" + request).getBytes(StandardCharsets.UTF_8))) + "\n"
+                + "X-Ops-Content-Hash:2jmj7l5rSw0yVb/vlWAYkK/YBwk=\n"
+                + "X-Ops-Timestamp:2023-01-01T00:00:00Z\n"
+                + "X-Ops-UserId:user";
+    }
+}
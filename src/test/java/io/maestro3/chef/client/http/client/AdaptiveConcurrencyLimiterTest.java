@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import io.maestro3.chef.client.http.client.AdaptiveConcurrencyLimiter.Outcome;
+import io.maestro3.chef.client.http.client.AdaptiveConcurrencyLimiter.Permit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void limitGrowsWhileItIsUsed() {
+        // round trip times of a local loop are pure noise, tolerance accepts every one as fast
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 4, 1, 20, 0.5, 1000.0, 0, 100);
+
+        for (int round = 0; round < 100; round++) {
+            List<Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                permits.add(limiter.acquire());
+            }
+            for (Permit permit : permits) {
+                limiter.release(permit, Outcome.SUCCESS);
+            }
+        }
+
+        assertEquals(20, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void limitDoesNotGrowWhileItIsNotUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 4, 1, 20, 0.5, 1000.0, 0, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.release(limiter.acquire(), Outcome.SUCCESS);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void burstOfFailuresDecreasesLimitOnce() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 16, 1, 20, 0.5, 2.0, 0, 100);
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            permits.add(limiter.acquire());
+        }
+
+        for (Permit permit : permits) {
+            limiter.release(permit, Outcome.DROPPED);
+        }
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotDropBelowMinimum() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 4, 2, 20, 0.5, 2.0, 0, 100);
+
+        for (int i = 0; i < 5; i++) {
+            Permit permit = limiter.acquire();
+            // next failure is another round trip, not part of the same burst
+            Thread.sleep(2);
+            limiter.release(permit, Outcome.DROPPED);
+        }
+
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void ignoredOutcomeDoesNotChangeLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 4, 1, 20, 0.5, 2.0, 0, 100);
+
+        limiter.release(limiter.acquire(), Outcome.IGNORED);
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void queueIsBoundedAndWaiterGetsReleasedSlot() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 2, 1, 20, 0.5, 2.0, 2, 100);
+        Permit first = limiter.acquire();
+        limiter.acquire();
+
+        CompletableFuture<Permit> waiter = limiter.acquireAsync();
+        limiter.acquireAsync();
+        CompletableFuture<Permit> rejected = limiter.acquireAsync();
+
+        assertFalse(waiter.isDone());
+        assertEquals(2, limiter.getQueued());
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release(first, Outcome.IGNORED);
+
+        assertTrue(waiter.isDone());
+        assertEquals(1, limiter.getQueued());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test(timeout = 5000)
+    public void blockingAcquireGivesUpAfterQueueTimeout() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 1, 1, 20, 0.5, 2.0, 1, 50);
+        limiter.acquire();
+
+        try {
+            limiter.acquire();
+            fail("RejectedExecutionException expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void repeatedReleaseIsIgnored() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 2, 1, 20, 0.5, 2.0, 0, 100);
+        Permit permit = limiter.acquire();
+        limiter.acquire();
+
+        limiter.release(permit, Outcome.IGNORED);
+        limiter.release(permit, Outcome.IGNORED);
+
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentRequestsNeverExceedLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("server", 4, 1, 8, 0.9, 2.0, 1000, 5000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int request = i;
+                results.add(callers.submit(() -> {
+                    Permit permit = limiter.acquire();
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    running.decrementAndGet();
+                    limiter.release(permit, request % 10 == 0 ? Outcome.DROPPED : Outcome.SUCCESS);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertTrue(maxRunning.get() <= 8);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import io.maestro3.chef.client.http.client.AdaptiveConcurrencyLimiter.Outcome;
+import io.maestro3.chef.client.http.client.CircuitBreaker.State;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void breakerStaysClosedUntilMinimumCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+
+        complete(breaker, 4, Outcome.DROPPED, FAST);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(-1, breaker.getFailureRate());
+    }
+
+    @Test
+    public void failureRateOpensBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+
+        complete(breaker, 3, Outcome.SUCCESS, FAST);
+        complete(breaker, 2, Outcome.DROPPED, FAST);
+        assertEquals(State.CLOSED, breaker.getState());
+        complete(breaker, 1, Outcome.DROPPED, FAST);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejected());
+    }
+
+    @Test
+    public void slowCallRateOpensBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+
+        complete(breaker, 1, Outcome.SUCCESS, FAST);
+        complete(breaker, 4, Outcome.SUCCESS, SLOW);
+
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void ignoredCallsAreNotRecorded() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+
+        complete(breaker, 10, Outcome.IGNORED, SLOW);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(-1, breaker.getFailureRate());
+    }
+
+    @Test
+    public void oldCallsLeaveWindow() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+
+        complete(breaker, 2, Outcome.DROPPED, FAST);
+        complete(breaker, 10, Outcome.SUCCESS, FAST);
+
+        assertEquals(0, breaker.getFailureRate());
+        complete(breaker, 4, Outcome.DROPPED, FAST);
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void successfulProbeClosesBreaker() throws Exception {
+        CircuitBreaker breaker = open();
+        TimeUnit.MILLISECONDS.sleep(250);
+
+        CircuitBreaker.Call probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        // only one probe at a time
+        assertNull(breaker.tryAcquire());
+
+        breaker.complete(probe, Outcome.SUCCESS, FAST);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(-1, breaker.getFailureRate());
+    }
+
+    @Test
+    public void failedOrSlowProbeOpensBreakerAgain() throws Exception {
+        CircuitBreaker breaker = open();
+        TimeUnit.MILLISECONDS.sleep(250);
+        breaker.complete(breaker.tryAcquire(), Outcome.DROPPED, FAST);
+        assertEquals(State.OPEN, breaker.getState());
+
+        TimeUnit.MILLISECONDS.sleep(250);
+        breaker.complete(breaker.tryAcquire(), Outcome.SUCCESS, SLOW);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void ignoredProbeLetsNextProbeThrough() throws Exception {
+        CircuitBreaker breaker = open();
+        TimeUnit.MILLISECONDS.sleep(250);
+
+        breaker.complete(breaker.tryAcquire(), Outcome.IGNORED, FAST);
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertNotNull(breaker.tryAcquire());
+    }
+
+    @Test
+    public void lateAnswersDoNotChangeOpenBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+        CircuitBreaker.Call late = breaker.tryAcquire();
+        complete(breaker, 5, Outcome.DROPPED, FAST);
+        assertEquals(State.OPEN, breaker.getState());
+
+        breaker.complete(late, Outcome.SUCCESS, FAST);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(100, breaker.getFailureRate());
+    }
+
+    private static CircuitBreaker open() {
+        CircuitBreaker breaker = new CircuitBreaker("server", 10, 5, 50, 80, 100, 200);
+        complete(breaker, 5, Outcome.DROPPED, FAST);
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void complete(CircuitBreaker breaker, int calls, Outcome outcome, long durationNanos) {
+        for (int i = 0; i < calls; i++) {
+            breaker.complete(breaker.tryAcquire(), outcome, durationNanos);
+        }
+    }
+}
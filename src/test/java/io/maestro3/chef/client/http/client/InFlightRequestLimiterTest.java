@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightRequestLimiterTest {
+
+    @Test
+    public void queuedTasksCompletingImmediatelyDoNotNestDrains() {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(1);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        CompletableFuture<String> first = limiter.submit(() -> blocker);
+
+        int queued = 100_000;
+        List<CompletableFuture<String>> results = new ArrayList<>(queued);
+        for (int i = 0; i < queued; i++) {
+            results.add(limiter.submit(() -> CompletableFuture.failedFuture(new IllegalStateException("rejected"))));
+        }
+        assertEquals(queued, limiter.getPending());
+
+        // every queued task fails on the draining thread, nested drains would overflow the stack
+        blocker.complete("done");
+
+        assertEquals("done", first.join());
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.isCompletedExceptionally());
+        }
+        assertEquals(0, limiter.getPending());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void inFlightNeverExceedsLimit() throws Exception {
+        int maxInFlight = 4;
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(maxInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        int tasks = 2000;
+        CountDownLatch done = new CountDownLatch(tasks);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(() -> limiter.submit(() -> {
+                    maxSeen.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    return CompletableFuture.supplyAsync(() -> {
+                        running.decrementAndGet();
+                        return "ok";
+                    }, executor);
+                }).whenComplete((value, error) -> done.countDown()));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue("max in flight " + maxSeen.get(), maxSeen.get() <= maxInFlight);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void cancellationReachesRunningTask() {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(1);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> result = limiter.submit(() -> running);
+
+        result.cancel(true);
+
+        assertTrue(running.isCancelled());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void taskCancelledWhileQueuedIsNotStarted() {
+        InFlightRequestLimiter limiter = new InFlightRequestLimiter(1);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        limiter.submit(() -> blocker);
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> cancelled = limiter.submit(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("cancelled");
+        });
+        CompletableFuture<String> next = limiter.submit(() -> CompletableFuture.completedFuture("next"));
+
+        cancelled.cancel(true);
+        blocker.complete("done");
+
+        assertEquals(0, started.get());
+        assertEquals("next", next.join());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getPending());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestHedgerTest {
+
+    @Test(timeout = 5000)
+    public void slowRequestIsHedgedAndLosingAttemptCancelled() {
+        RequestHedger hedger = new RequestHedger("server", 90, 5, 50, 10, 64);
+        List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+        String result = hedger.execute(() -> {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            synchronized (attempts) {
+                attempts.add(attempt);
+                if (attempts.size() == 2) {
+                    // the hedge answers, the first attempt never does
+                    attempt.complete("hedge");
+                }
+            }
+            return attempt;
+        }).join();
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.size());
+        assertTrue(attempts.get(0).isCancelled());
+        assertEquals(1, hedger.getHedges());
+        // win is counted right after the result is completed
+        sleep(50);
+        assertEquals(1, hedger.getHedgesWon());
+    }
+
+    @Test
+    public void fastRequestIsNotHedged() {
+        RequestHedger hedger = new RequestHedger("server", 90, 5, 50, 10, 64);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("ok", hedger.execute(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        }).join());
+
+        sleep(100);
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedger.getHedges());
+    }
+
+    @Test(timeout = 5000)
+    public void failedAttemptDoesNotFailRequestWhileHedgeRuns() {
+        RequestHedger hedger = new RequestHedger("server", 90, 5, 20, 10, 64);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = hedger.execute(() -> attempts.incrementAndGet() == 1
+                ? CompletableFuture.supplyAsync(() -> {
+                    throw new IllegalStateException("first");
+                }, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS))
+                : CompletableFuture.supplyAsync(() -> "second", CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS)));
+
+        assertEquals("second", result.join());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void hedgesAreLimitedByBudget() {
+        // budget of 10 percent allows one hedge up front, then one per ten requests
+        RequestHedger hedger = new RequestHedger("server", 90, 1, 1, 10, 64);
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<String> never = new CompletableFuture<>();
+            hedger.execute(() -> never);
+        }
+        sleep(100);
+
+        assertEquals(1, hedger.getHedges());
+    }
+
+    @Test
+    public void failureOfSingleAttemptIsReported() {
+        RequestHedger hedger = new RequestHedger("server", 90, 5, 1000, 10, 64);
+        try {
+            hedger.execute(() -> CompletableFuture.<String>failedFuture(new IllegalStateException("failed"))).join();
+            fail("CompletionException expected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void delayFollowsPercentileOfRecentLatencies() {
+        RequestHedger hedger = new RequestHedger("server", 90, 5, 500, 10, 64);
+        for (int i = 0; i < 64; i++) {
+            hedger.execute(() -> CompletableFuture.completedFuture("ok")).join();
+        }
+
+        assertEquals(5, hedger.getDelayMillis());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void burstOfRetriesIsLimitedByMaxTokens() {
+        RetryBudget budget = new RetryBudget("server", RetryPolicy.NONE, 0.2, 3);
+
+        assertEquals(3, retries(budget, 10));
+        assertEquals(3, budget.getRetries());
+        assertEquals(7, budget.getDenied());
+    }
+
+    @Test
+    public void requestsRefillBudgetByRetryRatio() {
+        RetryBudget budget = new RetryBudget("server", RetryPolicy.NONE, 0.2, 3);
+        retries(budget, 3);
+
+        for (int i = 0; i < 4; i++) {
+            budget.onRequest();
+        }
+        assertFalse(budget.tryRetry());
+        budget.onRequest();
+
+        assertTrue(budget.tryRetry());
+        assertEquals(0, budget.getTokens(), 0);
+    }
+
+    @Test
+    public void budgetDoesNotGrowAboveMaxTokens() {
+        RetryBudget budget = new RetryBudget("server", RetryPolicy.NONE, 0.5, 2);
+
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+
+        assertEquals(2, budget.getTokens(), 0);
+        assertEquals(2, retries(budget, 10));
+    }
+
+    @Test
+    public void fractionsOfTokensAddUpExactly() {
+        RetryBudget budget = new RetryBudget("server", RetryPolicy.NONE, 0.1, 1);
+        retries(budget, 1);
+
+        for (int i = 0; i < 10; i++) {
+            budget.onRequest();
+        }
+
+        assertTrue(budget.tryRetry());
+    }
+
+    private static int retries(RetryBudget budget, int attempts) {
+        int allowed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (budget.tryRetry()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
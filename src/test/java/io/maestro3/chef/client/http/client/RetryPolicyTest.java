@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.http.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayIsJitteredBelowExponentialBound() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+
+        assertEquals(100, maxDelay(policy, 1));
+        assertEquals(200, maxDelay(policy, 2));
+        assertEquals(400, maxDelay(policy, 3));
+        assertTrue(minDelay(policy, 3) < 100);
+    }
+
+    @Test
+    public void delayIsCappedByMaxDelay() {
+        RetryPolicy policy = new RetryPolicy(100, 100, 1000);
+
+        assertEquals(1000, maxDelay(policy, 5));
+        // shift beyond the size of long must not overflow into a negative bound
+        assertEquals(1000, maxDelay(policy, 90));
+    }
+
+    @Test
+    public void zeroBaseDelayRetriesAtOnce() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+
+        assertEquals(0, maxDelay(policy, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxAttemptsMustBePositive() {
+        new RetryPolicy(0, 100, 1000);
+    }
+
+    private static long maxDelay(RetryPolicy policy, int retry) {
+        long max = 0;
+        for (int i = 0; i < 100000; i++) {
+            long delay = policy.getDelayMillis(retry);
+            assertTrue(delay >= 0);
+            max = Math.max(max, delay);
+        }
+        return max;
+    }
+
+    private static long minDelay(RetryPolicy policy, int retry) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 100000; i++) {
+            min = Math.min(min, policy.getDelayMillis(retry));
+        }
+        return min;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.client.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.maestro3.chef.client.command.Deadline;
+import io.maestro3.chef.client.command.databag.GetDataBagItemCommand;
+import io.maestro3.chef.client.context.ChefContextType;
+import io.maestro3.chef.client.context.impl.ChefContext;
+import io.maestro3.chef.client.exception.ChefClientException;
+import io.maestro3.chef.client.exception.ChefDeadlineExceededException;
+import io.maestro3.chef.client.http.client.RequestHedger;
+import io.maestro3.chef.client.http.client.RetryBudget;
+import io.maestro3.chef.client.http.client.RetryPolicy;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClientImpl;
+import io.maestro3.chef.client.response.IChefResponse;
+import io.maestro3.chef.client.utils.EnsureBouncyCastle;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the client against a local stub of chef server: every item answers with its own status code and body, so a
+ * response mixed up between concurrent executions is detected.
+ */
+public class ChefClientTest {
+
+    private static final String ITEM_PATH = "/organizations/org/data/bag/";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private CloseableHttpClient httpClient;
+    private ExecutorService asyncExecutor;
+    private ExecutorService hedgeExecutor;
+    private ChefContext context;
+    private final AtomicInteger slowRequests = new AtomicInteger();
+    private final AtomicInteger gatewayRequests = new AtomicInteger();
+    private final AtomicBoolean trickleAborted = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws Exception {
+        // chef signs requests with raw RSA signature, which only bouncy castle provides
+        EnsureBouncyCastle.ensure();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(ITEM_PATH, this::handle);
+        serverExecutor = Executors.newFixedThreadPool(32);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        httpClient = HttpClients.custom()
+                .setMaxConnTotal(64)
+                .setMaxConnPerRoute(64)
+                .build();
+        asyncExecutor = Executors.newFixedThreadPool(4);
+        hedgeExecutor = Executors.newFixedThreadPool(4);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        context = new ChefContext()
+                .setHost("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .setServerId("server")
+                .setChefOrganization("org")
+                .setUsername("user")
+                .setChefContextType(ChefContextType.ZONE)
+                .setAuthenticationKey(generator.generateKeyPair().getPrivate())
+                .setChefVersion("12")
+                .setVersion(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        httpClient.close();
+        asyncExecutor.shutdownNow();
+        hedgeExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentExecutionsGetTheirOwnResponses() throws Exception {
+        ChefClient client = client(null, null);
+        int threads = 32;
+        int executionsPerThread = 50;
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread * executionsPerThread;
+                results.add(callers.submit(() -> {
+                    for (int item = first; item < first + executionsPerThread; item++) {
+                        assertResponse(item, client.execute(new GetDataBagItemCommand("bag", String.valueOf(item))));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentAsyncExecutionsGetTheirOwnResponses() {
+        ChefClient client = client(null, null);
+        int executions = 1000;
+        List<CompletableFuture<IChefResponse<Map>>> results = new ArrayList<>(executions);
+        for (int item = 0; item < executions; item++) {
+            results.add(client.executeAsync(new GetDataBagItemCommand("bag", String.valueOf(item))));
+        }
+        for (int item = 0; item < executions; item++) {
+            assertResponse(item, results.get(item).join());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void slowResponseIsAbortedAtDeadline() {
+        // every read completes within the socket timeout, only the deadline can stop the request
+        ChefClient client = client(RequestConfig.custom().setSocketTimeout(1000).build(), null);
+        GetDataBagItemCommand command = new GetDataBagItemCommand("bag", "slow");
+        command.setDeadline(Deadline.after(500, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        try {
+            client.execute(command);
+            fail("ChefDeadlineExceededException expected");
+        } catch (ChefClientException e) {
+            assertTrue(e instanceof ChefDeadlineExceededException);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test(timeout = 10000)
+    public void slowAsyncResponseFailsAtDeadline() throws Exception {
+        ChefClient client = client(null, null);
+        GetDataBagItemCommand command = new GetDataBagItemCommand("bag", "slow");
+        command.setDeadline(Deadline.after(500, TimeUnit.MILLISECONDS));
+
+        try {
+            client.executeAsync(command).get(2, TimeUnit.SECONDS);
+            fail("ChefDeadlineExceededException expected");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof ChefDeadlineExceededException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void slowBlockingRequestIsHedged() throws Exception {
+        RequestHedger hedger = new RequestHedger("server", 90, 10, 100, 10, 64);
+        ChefClient client = client(null, hedger);
+
+        long start = System.nanoTime();
+        IChefResponse<Map> response = client.execute(new GetDataBagItemCommand("bag", "hedged"));
+
+        assertEquals(HttpStatus.SC_OK, response.getCode());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(2, slowRequests.get());
+        assertEquals(1, hedger.getHedges());
+    }
+
+    @Test(timeout = 10000)
+    public void cancelledAsyncExecutionAbortsRequestAndFreesItsSlot() throws Exception {
+        ChefClient client = client(1, null, null, null, null);
+        CompletableFuture<IChefResponse<Map>> slow = client.executeAsync(new GetDataBagItemCommand("bag", "slow"));
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        slow.cancel(true);
+
+        // the only in-flight slot is free long before the slow response would end
+        assertResponse(1, client.executeAsync(new GetDataBagItemCommand("bag", "1")).get(2, TimeUnit.SECONDS));
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(trickleAborted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void cancelledAsyncExecutionIsNotRetried() throws Exception {
+        RetryBudget retryBudget = new RetryBudget("server", new RetryPolicy(5, 300, 300), 1, 10);
+        ChefClient client = client(64, null, retryBudget, null, null);
+        CompletableFuture<IChefResponse<Map>> result = client.executeAsync(new GetDataBagItemCommand("bag", "gateway"));
+        while (gatewayRequests.get() == 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        result.cancel(true);
+
+        TimeUnit.MILLISECONDS.sleep(1500);
+        assertEquals(1, gatewayRequests.get());
+    }
+
+    @Test(timeout = 10000)
+    public void callerSendsRequestItselfWhenHedgeExecutorIsFull() throws Exception {
+        RequestHedger hedger = new RequestHedger("server", 90, 10, 100, 10, 64);
+        Executor fullExecutor = command -> {
+            throw new RejectedExecutionException("full");
+        };
+        ChefClient client = client(null, hedger, fullExecutor);
+
+        assertResponse(1, client.execute(new GetDataBagItemCommand("bag", "1")));
+        assertResponse(3, client.execute(new GetDataBagItemCommand("bag", "3")));
+        assertEquals(0, hedger.getHedges());
+    }
+
+    private ChefClient client(RequestConfig requestConfig, RequestHedger hedger) {
+        return client(requestConfig, hedger, hedger != null ? hedgeExecutor : null);
+    }
+
+    private ChefClient client(RequestConfig requestConfig, RequestHedger hedger, Executor hedgeExecutor) {
+        return client(64, requestConfig, null, hedger, hedgeExecutor);
+    }
+
+    private ChefClient client(int maxInFlight, RequestConfig requestConfig, RetryBudget retryBudget, RequestHedger hedger,
+                              Executor hedgeExecutor) {
+        java.net.http.HttpClient jdkClient = java.net.http.HttpClient.newBuilder()
+                .executor(asyncExecutor)
+                .build();
+        return new ChefClient(httpClient, new SimpleAsyncHttpClientImpl(jdkClient, Duration.ofSeconds(30)), context,
+                maxInFlight, requestConfig, null, null, retryBudget, hedger, hedgeExecutor);
+    }
+
+    private static void assertResponse(int item, IChefResponse<Map> response) {
+        if (item % 3 == 0) {
+            assertEquals(HttpStatus.SC_NOT_FOUND, response.getCode());
+            assertTrue(response.getErrorOccurred());
+        } else {
+            assertEquals(HttpStatus.SC_OK, response.getCode());
+            assertFalse(response.getErrorOccurred());
+        }
+        assertEquals(String.valueOf(item), response.getResult().get("id"));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String item = exchange.getRequestURI().getPath().substring(ITEM_PATH.length());
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if ("slow".equals(item)) {
+                trickle(exchange);
+            } else if ("gateway".equals(item)) {
+                gatewayRequests.incrementAndGet();
+                respond(exchange, HttpStatus.SC_BAD_GATEWAY, "{}");
+            } else if ("hedged".equals(item)) {
+                // the first request hangs, its hedge answers at once
+                if (slowRequests.incrementAndGet() == 1) {
+                    sleep(5000);
+                }
+                respond(exchange, HttpStatus.SC_OK, "{\"id\":\"hedged\"}");
+            } else {
+                int code = Integer.parseInt(item) % 3 == 0 ? HttpStatus.SC_NOT_FOUND : HttpStatus.SC_OK;
+                sleep(Integer.parseInt(item) % 5);
+                respond(exchange, code, "{\"id\":\"" + item + "\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void trickle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(HttpStatus.SC_OK, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write('{');
+            for (int i = 0; i < 50; i++) {
+                out.flush();
+                sleep(100);
+                out.write(' ');
+            }
+            out.write('}');
+            out.close();
+        } catch (IOException e) {
+            // client closed the connection
+            trickleAborted.set(true);
+            throw e;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
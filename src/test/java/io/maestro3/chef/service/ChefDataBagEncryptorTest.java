@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChefDataBagEncryptorTest {
+
+    @Test
+    public void encryptsValuesInChefFormat() throws Exception {
+        ChefDataBagEncryptor encryptor = encryptor(new MapSecretProvider(), 30, 4);
+        Map<String, String> data = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            data.put("key" + i, "value " + i);
+        }
+        data.put("missing", null);
+
+        Map<String, Object> encrypted = encryptor.encrypt("bag", data);
+
+        assertEquals(50, encrypted.size());
+        assertFalse(encrypted.containsKey("missing"));
+        for (Map.Entry<String, Object> entry : encrypted.entrySet()) {
+            String plain = decrypt("secret-bag", entry.getValue());
+            assertTrue(plain.contains(data.get(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void failingSecretProviderIsReportedAsSecurityException() throws Exception {
+        MapSecretProvider secrets = new MapSecretProvider();
+        secrets.failure = new IllegalStateException("vault is down");
+        ChefDataBagEncryptor encryptor = encryptor(secrets, 30, 32);
+
+        try {
+            encryptor.encrypt("bag", singleValue());
+            fail("GeneralSecurityException expected");
+        } catch (GeneralSecurityException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void missingSecretIsReportedAsSecurityException() throws Exception {
+        MapSecretProvider secrets = new MapSecretProvider();
+        secrets.missing = true;
+
+        encryptor(secrets, 30, 32).encrypt("bag", singleValue());
+    }
+
+    @Test
+    public void keyIsCachedWithinTtlAndReloadedAfterInvalidate() throws Exception {
+        MapSecretProvider secrets = new MapSecretProvider();
+        ChefDataBagEncryptor encryptor = encryptor(secrets, 30, 32);
+
+        encryptor.encrypt("bag", singleValue());
+        encryptor.encrypt("bag", singleValue());
+        assertEquals(1, secrets.loads.get());
+
+        encryptor.invalidate("bag");
+        encryptor.encrypt("bag", singleValue());
+        assertEquals(2, secrets.loads.get());
+    }
+
+    private static ChefDataBagEncryptor encryptor(IChefSecretProvider secrets, long keyCacheSeconds, int parallelThreshold) throws Exception {
+        ChefDataBagEncryptor encryptor = new ChefDataBagEncryptor(secrets, keyCacheSeconds);
+        Field threshold = ChefDataBagEncryptor.class.getDeclaredField("parallelThreshold");
+        threshold.setAccessible(true);
+        threshold.setInt(encryptor, parallelThreshold);
+        return encryptor;
+    }
+
+    private static Map<String, String> singleValue() {
+        Map<String, String> data = new HashMap<>();
+        data.put("key", "value");
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String decrypt(String secret, Object value) throws Exception {
+        Map<String, Object> encrypted = (Map<String, Object>) value;
+        assertEquals(3, encrypted.get("version"));
+        assertEquals("aes-256-gcm", encrypted.get("cipher"));
+        byte[] data = Base64.getDecoder().decode((String) encrypted.get("encrypted_data"));
+        byte[] tag = Base64.getDecoder().decode((String) encrypted.get("auth_tag"));
+        assertEquals(16, tag.length);
+        byte[] input = new byte[data.length + tag.length];
+        System.arraycopy(data, 0, input, 0, data.length);
+        System.arraycopy(tag, 0, input, data.length, tag.length);
+
+        SecretKey key = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(secret.getBytes()), "AES");
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, Base64.getDecoder().decode((String) encrypted.get("iv"))));
+        return new String(cipher.doFinal(input), StandardCharsets.UTF_8);
+    }
+
+    private static final class MapSecretProvider implements IChefSecretProvider {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private RuntimeException failure;
+        private boolean missing;
+
+        @Override
+        public String get(String instanceSearchId) {
+            loads.incrementAndGet();
+            if (failure != null) {
+                throw failure;
+            }
+            return missing ? null : "secret-" + instanceSearchId;
+        }
+
+        @Override
+        public void create(String instanceSearchId, String secret) {
+        }
+
+        @Override
+        public void delete(String instanceSearchId) {
+        }
+    }
+}
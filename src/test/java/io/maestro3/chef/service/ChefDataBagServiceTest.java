@@ -0,0 +1,285 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.service;
+
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.context.ChefContextType;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.impl.ChefContext;
+import io.maestro3.chef.client.factory.ChefClientAttributes;
+import io.maestro3.chef.client.factory.IChefClientFactory;
+import io.maestro3.chef.client.http.client.SimpleAsyncHttpClientImpl;
+import io.maestro3.chef.client.impl.ChefClient;
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import io.maestro3.chef.client.utils.EnsureBouncyCastle;
+import io.maestro3.chef.model.data.DataBagItemWrite;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes items through a real client to a local stub of chef server, which keeps data bags and items in memory and
+ * answers item creation with not found for a missing data bag and with conflict for an existing item.
+ */
+public class ChefDataBagServiceTest {
+
+    private static final String DATA_PATH = "/organizations/org/data";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private CloseableHttpClient httpClient;
+    private ExecutorService asyncExecutor;
+    private ChefContext context;
+    private ChefDataBagService service;
+    private final Set<String> dataBags = ConcurrentHashMap.newKeySet();
+    private final Map<String, Map<String, Object>> items = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        EnsureBouncyCastle.ensure();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(DATA_PATH, this::handle);
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        httpClient = HttpClients.createDefault();
+        asyncExecutor = Executors.newFixedThreadPool(2);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        context = new ChefContext()
+                .setHost("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .setServerId("server")
+                .setChefOrganization("org")
+                .setUsername("user")
+                .setChefContextType(ChefContextType.ZONE)
+                .setAuthenticationKey(generator.generateKeyPair().getPrivate())
+                .setChefVersion("12")
+                .setVersion(1);
+
+        java.net.http.HttpClient jdkClient = java.net.http.HttpClient.newBuilder()
+                .executor(asyncExecutor)
+                .build();
+        ChefClient client = new ChefClient(httpClient, new SimpleAsyncHttpClientImpl(jdkClient, Duration.ofSeconds(30)), context,
+                8, null, null, null, null, null, null);
+        IChefSecretProvider secrets = new FixedSecretProvider();
+        service = new ChefDataBagService();
+        inject("clientFactory", new SingleClientFactory(client));
+        inject("secretProvider", secrets);
+        inject("dataBagEncryptor", new ChefDataBagEncryptor(secrets, 30));
+        inject("writeTracker", new DataBagWriteTracker(new ChefClientMetrics(), 100, 5));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        httpClient.close();
+        asyncExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void missingDataBagIsCreatedBeforeItem() {
+        service.updateOrCreateItem(context, "bag", "item", Collections.singletonMap("key", "value"));
+
+        assertEquals(Arrays.asList("POST /bag", "POST ", "POST /bag"), requests);
+        assertTrue(items.get("bag/item").containsKey("key"));
+    }
+
+    @Test(timeout = 10000)
+    public void existingItemIsReplacedOnConflict() {
+        existingItem("item");
+
+        service.updateOrCreateItem(context, "bag", "item", Collections.singletonMap("key", "new"), true);
+
+        assertEquals(Arrays.asList("POST /bag", "PUT /bag/item"), requests);
+        assertTrue(items.get("bag/item").containsKey("key"));
+        assertTrue(!items.get("bag/item").containsKey("old"));
+    }
+
+    @Test(timeout = 10000)
+    public void emptyDataCreatesItemHoldingOnlyId() {
+        service.updateOrCreateItem(context, "bag", "item", Collections.emptyMap());
+
+        assertEquals(Arrays.asList("POST /bag", "POST ", "POST /bag"), requests);
+        assertEquals(Collections.singletonMap("id", "item"), items.get("bag/item"));
+    }
+
+    @Test(timeout = 10000)
+    public void emptyDataKeepsExistingItem() {
+        existingItem("item");
+
+        service.updateOrCreateItem(context, "bag", "item", null);
+
+        assertEquals(Collections.singletonList("POST /bag"), requests);
+        assertTrue(items.get("bag/item").containsKey("old"));
+    }
+
+    @Test(timeout = 10000)
+    public void batchWritesFallBackOnNotFoundAndConflict() {
+        existingItem("item");
+        existingItem("kept");
+
+        List<DataBagItemWriteResult> results = service.updateOrCreateItems(context, Arrays.asList(
+                new DataBagItemWrite("bag", "item", Collections.singletonMap("key", "new"), false),
+                new DataBagItemWrite("other", "item", Collections.singletonMap("key", "value"), false),
+                new DataBagItemWrite("bag", "empty", Collections.emptyMap(), false),
+                new DataBagItemWrite("bag", "kept", Collections.emptyMap(), false)));
+
+        for (DataBagItemWriteResult result : results) {
+            assertTrue(result.toString(), result.isSuccess());
+        }
+        assertTrue(items.get("bag/item").containsKey("key"));
+        assertTrue(items.get("other/item").containsKey("key"));
+        assertEquals(Collections.singletonMap("id", "empty"), items.get("bag/empty"));
+        assertTrue(items.get("bag/kept").containsKey("old"));
+        assertTrue(requests.contains("PUT /bag/item"));
+        assertTrue(requests.contains("POST "));
+    }
+
+    private void existingItem(String name) {
+        dataBags.add("bag");
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", name);
+        item.put("old", "value");
+        items.put("bag/" + name, item);
+    }
+
+    private void inject(String name, Object value) throws Exception {
+        Field field = ChefDataBagService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring(DATA_PATH.length());
+        String method = exchange.getRequestMethod();
+        requests.add(method + " " + path);
+        Map<String, Object> body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new Gson().fromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8), Map.class);
+        }
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            String[] parts = path.isEmpty() ? new String[0] : path.substring(1).split("/");
+            if (parts.length == 0) {
+                boolean created = dataBags.add((String) body.get("name"));
+                respond(exchange, created ? HttpStatus.SC_CREATED : HttpStatus.SC_CONFLICT);
+            } else if (!dataBags.contains(parts[0])) {
+                respond(exchange, HttpStatus.SC_NOT_FOUND);
+            } else if (parts.length == 1) {
+                Map<String, Object> item = (Map<String, Object>) body.get("raw_data");
+                boolean created = items.putIfAbsent(parts[0] + "/" + item.get("id"), item) == null;
+                respond(exchange, created ? HttpStatus.SC_CREATED : HttpStatus.SC_CONFLICT);
+            } else {
+                items.put(parts[0] + "/" + parts[1], body);
+                respond(exchange, HttpStatus.SC_OK);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code) throws IOException {
+        byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class SingleClientFactory implements IChefClientFactory {
+
+        private final IChefClient client;
+
+        private SingleClientFactory(IChefClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public IChefClient getInstance(IChefContext chefContext) {
+            return client;
+        }
+
+        @Override
+        public IChefClient getAdminInstance(IChefContext chefContext, ChefClientAttributes attributes) {
+            return client;
+        }
+
+        @Override
+        public Map<ChefContextType, CacheStats> getCacheStats() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public CacheStats getAdminCacheStats() {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    private static final class FixedSecretProvider implements IChefSecretProvider {
+
+        @Override
+        public String get(String instanceSearchId) {
+            return "secret-" + instanceSearchId;
+        }
+
+        @Override
+        public void create(String instanceSearchId, String secret) {
+        }
+
+        @Override
+        public void delete(String instanceSearchId) {
+        }
+    }
+}
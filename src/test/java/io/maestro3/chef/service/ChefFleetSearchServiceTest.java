@@ -0,0 +1,197 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.service;
+
+import com.google.common.cache.CacheStats;
+import io.maestro3.chef.client.IChefClient;
+import io.maestro3.chef.client.command.search.NodeDescriptor;
+import io.maestro3.chef.client.command.search.StubChefSearchServer;
+import io.maestro3.chef.client.command.search.attributes.GetNodesStatisticAttributesResult;
+import io.maestro3.chef.client.context.ChefContextType;
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.IChefContextFactory;
+import io.maestro3.chef.client.factory.ChefClientAttributes;
+import io.maestro3.chef.client.factory.IChefClientFactory;
+import io.maestro3.chef.model.ChefConfiguration;
+import io.maestro3.chef.model.data.ChefFleetSearchResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChefFleetSearchServiceTest {
+
+    private final Map<String, StubChefSearchServer> servers = new LinkedHashMap<>();
+    private final Map<IChefContext, IChefClient> clients = new IdentityHashMap<>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (StubChefSearchServer server : servers.values()) {
+            server.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failedServersAreReportedNextToResultsOfOthers() throws Exception {
+        server("a").putNode("a1", null);
+        server("a").putNode("a2", null);
+        server("b").failPage(0);
+        ChefFleetSearchService service = service(8, 30);
+
+        ChefFleetSearchResult<NodeDescriptor> result = service.search(GetNodesStatisticAttributesResult.class,
+                configurations("a", "b", "missing"), Collections.emptyMap(), null);
+
+        assertFalse(result.isComplete());
+        assertEquals(Collections.singleton("a"), result.getResultsByServer().keySet());
+        assertEquals(2, result.getAllResults().size());
+        assertEquals(Arrays.asList("b", "missing"), new ArrayList<>(result.getErrorsByServer().keySet()));
+        assertTrue(result.getErrorsByServer().toString(), result.getErrorsByServer().get("b").startsWith("Bad request"));
+    }
+
+    @Test(timeout = 10000)
+    public void serverWaitingForSlotTimesOutFromSubmission() throws Exception {
+        server("slow").putNode("s1", null);
+        server("slow").slowPage(0, 3000);
+        // would finish in time if its timeout only started once the slow server released the only slot
+        server("queued").putNode("q1", null);
+        server("queued").slowPage(0, 600);
+        ChefFleetSearchService service = service(1, 1);
+
+        long start = System.nanoTime();
+        ChefFleetSearchResult<NodeDescriptor> result = service.search(GetNodesStatisticAttributesResult.class,
+                configurations("slow", "queued"), Collections.emptyMap(), null);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+        assertTrue(result.getResultsByServer().isEmpty());
+        assertEquals("Search timed out after 1 seconds.", result.getErrorsByServer().get("slow"));
+        assertEquals("Search timed out after 1 seconds.", result.getErrorsByServer().get("queued"));
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(server("slow").isAborted(0));
+    }
+
+    private StubChefSearchServer server(String serverId) throws Exception {
+        StubChefSearchServer server = servers.get(serverId);
+        if (server == null) {
+            server = new StubChefSearchServer();
+            servers.put(serverId, server);
+            clients.put(server.getContext(), server.client(8));
+        }
+        return server;
+    }
+
+    private static List<ChefConfiguration> configurations(String... serverIds) {
+        List<ChefConfiguration> configurations = new ArrayList<>();
+        for (String serverId : serverIds) {
+            ChefConfiguration configuration = new ChefConfiguration();
+            configuration.setServerId(serverId);
+            configurations.add(configuration);
+        }
+        return configurations;
+    }
+
+    private ChefFleetSearchService service(int maxConcurrentServers, long serverTimeoutSeconds) throws Exception {
+        ChefFleetSearchService service = new ChefFleetSearchService(new ClientFactory(), new ContextFactory(), null, null,
+                maxConcurrentServers);
+        setField(service, "defaultSearchParallelism", 4);
+        setField(service, "serverTimeoutSeconds", serverTimeoutSeconds);
+        return service;
+    }
+
+    private static void setField(ChefFleetSearchService service, String name, long value) throws Exception {
+        Field field = ChefFleetSearchService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        if (field.getType() == int.class) {
+            field.setInt(service, (int) value);
+        } else {
+            field.setLong(service, value);
+        }
+    }
+
+    private final class ContextFactory implements IChefContextFactory {
+
+        @Override
+        public IChefContext getInstance(ChefConfiguration chefConfiguration) {
+            StubChefSearchServer server = servers.get(chefConfiguration.getServerId());
+            return server != null ? server.getContext() : null;
+        }
+
+        @Override
+        public IChefContext getInstance(String serverId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IChefContext getProjectInstance(String tenant, String region) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IChefContext getInstance(String tenant, String region) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String convertHostToUri(String host) {
+            return host;
+        }
+
+        @Override
+        public void refreshServerContexts(ChefConfiguration chefConfiguration) {
+        }
+
+        @Override
+        public void invalidateCache() {
+        }
+    }
+
+    private final class ClientFactory implements IChefClientFactory {
+
+        @Override
+        public IChefClient getInstance(IChefContext chefContext) {
+            return clients.get(chefContext);
+        }
+
+        @Override
+        public IChefClient getAdminInstance(IChefContext chefContext, ChefClientAttributes attributes) {
+            return clients.get(chefContext);
+        }
+
+        @Override
+        public Map<ChefContextType, CacheStats> getCacheStats() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public CacheStats getAdminCacheStats() {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.command.search.StubChefSearchServer;
+import io.maestro3.chef.model.data.ChefNodeData;
+import io.maestro3.chef.model.data.ChefNodeDataReport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChefNodeSyncServiceTest {
+
+    private StubChefSearchServer server;
+    private ChefNodeSyncService service;
+    private long nowSeconds;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubChefSearchServer();
+        service = new ChefNodeSyncService(server.clientFactory(server.client(8)), null);
+        setField("fullPassIntervalMinutes", 60);
+        setField("watermarkOverlapSeconds", 300);
+        nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void firstSyncLoadsAllNodes() {
+        server.putNode("a", nowSeconds);
+        server.putNode("new", null);
+
+        Map<String, ChefNodeData> nodes = sync();
+
+        assertEquals(2, nodes.size());
+        assertEquals(Long.valueOf(TimeUnit.SECONDS.toMillis(nowSeconds)), nodes.get("a").getTimestamp());
+        assertEquals(null, nodes.get("new").getTimestamp());
+        assertEquals("*:*", server.getQueries().get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void changedNodesAreMergedFromLocalPollTimeMinusOverlap() {
+        server.putNode("a", nowSeconds - 3600);
+        server.putNode("b", nowSeconds - 3600);
+        sync();
+        server.putNode("a", nowSeconds + 1);
+        server.putNode("c", nowSeconds + 1);
+
+        Map<String, ChefNodeData> nodes = sync();
+
+        assertEquals(3, nodes.size());
+        assertEquals(Long.valueOf(TimeUnit.SECONDS.toMillis(nowSeconds + 1)), nodes.get("a").getTimestamp());
+        long from = rangeStart(server.getQueries().get(1));
+        assertTrue(from <= nowSeconds - 300);
+        assertTrue(from >= nowSeconds - 310);
+    }
+
+    @Test(timeout = 10000)
+    public void nodeClockRunningAheadDoesNotHideLaterChanges() {
+        server.putNode("ahead", nowSeconds + TimeUnit.DAYS.toSeconds(1));
+        sync();
+        sync();
+        server.putNode("b", nowSeconds);
+
+        Map<String, ChefNodeData> nodes = sync();
+
+        assertTrue(nodes.containsKey("b"));
+        assertTrue(rangeStart(server.getQueries().get(2)) <= nowSeconds);
+    }
+
+    @Test(timeout = 10000)
+    public void fullPassAddsMissedNodesAndDropsDeletedOnes() throws Exception {
+        server.putNode("deleted", nowSeconds);
+        sync();
+        server.removeNode("deleted");
+        // clock far behind and no completed chef run yet: both are invisible to the incremental query
+        server.putNode("behind", nowSeconds - 7200);
+        server.putNode("new", null);
+
+        Map<String, ChefNodeData> nodes = sync();
+        assertTrue(nodes.containsKey("deleted"));
+        assertFalse(nodes.containsKey("behind"));
+
+        setField("fullPassIntervalMinutes", 0);
+        nodes = sync();
+
+        assertEquals(2, nodes.size());
+        assertTrue(nodes.containsKey("behind"));
+        assertTrue(nodes.containsKey("new"));
+        assertEquals("*:*", server.getQueries().get(2));
+    }
+
+    @Test(timeout = 10000)
+    public void failedSyncKeepsSnapshotAndWatermark() {
+        server.putNode("a", nowSeconds);
+        sync();
+        server.failPage(0);
+
+        ChefNodeDataReport report = service.syncNodes(server.getContext());
+
+        assertFalse(report.getSuccess());
+        assertEquals(1, report.getData().size());
+        service.syncNodes(server.getContext());
+        List<String> queries = server.getQueries();
+        assertEquals(rangeStart(queries.get(1)), rangeStart(queries.get(2)));
+    }
+
+    private Map<String, ChefNodeData> sync() {
+        ChefNodeDataReport report = service.syncNodes(server.getContext());
+        assertTrue(report.getErrorMessage(), report.getSuccess());
+        Map<String, ChefNodeData> nodes = new HashMap<>();
+        for (ChefNodeData node : report.getData()) {
+            nodes.put(node.getName(), node);
+        }
+        return nodes;
+    }
+
+    private static long rangeStart(String query) {
+        assertTrue(query, query.startsWith("ohai_time:["));
+        return Long.parseLong(query.substring("ohai_time:[".length(), query.indexOf(' ')));
+    }
+
+    private void setField(String name, long value) throws Exception {
+        Field field = ChefNodeSyncService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.setLong(service, value);
+    }
+}
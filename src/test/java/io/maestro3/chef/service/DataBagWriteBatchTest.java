@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.context.IChefContext;
+import io.maestro3.chef.client.context.impl.ChefContext;
+import io.maestro3.chef.model.data.DataBagItemWrite;
+import io.maestro3.chef.model.data.DataBagItemWriteResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataBagWriteBatchTest {
+
+    private final RecordingDataBagService dataBagService = new RecordingDataBagService();
+    private final DataBagWriteBatch batch = new DataBagWriteBatch(dataBagService, new ChefContext());
+
+    @Test
+    public void valuesOfOneItemAreMergedAndLaterValuesWin() {
+        batch.put("bag", "item", data("a", "1", "b", "1"));
+        batch.put("bag", "other", data("x", "1"));
+        batch.put("bag", "item", data("b", "2", "c", "2"));
+
+        List<DataBagItemWriteResult> results = batch.flush();
+
+        List<DataBagItemWrite> writes = dataBagService.writes.get(0);
+        assertEquals(2, writes.size());
+        assertEquals("item", writes.get(0).getName());
+        assertEquals(data("a", "1", "b", "2", "c", "2"), writes.get(0).getData());
+        assertEquals("other", writes.get(1).getName());
+        assertEquals("item", results.get(0).getName());
+        assertEquals("other", results.get(1).getName());
+    }
+
+    @Test
+    public void sameItemNameInOtherDataBagIsSeparateItem() {
+        batch.put("bag", "item", data("a", "1"));
+        batch.put("other", "item", data("a", "2"));
+
+        batch.flush();
+
+        List<DataBagItemWrite> writes = dataBagService.writes.get(0);
+        assertEquals(2, writes.size());
+        assertEquals("bag", writes.get(0).getDataBag());
+        assertEquals("other", writes.get(1).getDataBag());
+    }
+
+    @Test
+    public void forcedRefreshIsKeptByLaterPuts() {
+        batch.put("bag", "item", data("a", "1"), true);
+        batch.put("bag", "item", data("b", "1"));
+
+        batch.flush();
+
+        assertTrue(dataBagService.writes.get(0).get(0).isForceRefresh());
+    }
+
+    @Test
+    public void itemWithoutDataIsStillWritten() {
+        batch.put("bag", "item", null);
+
+        batch.flush();
+
+        List<DataBagItemWrite> writes = dataBagService.writes.get(0);
+        assertEquals(1, writes.size());
+        assertTrue(writes.get(0).getData().isEmpty());
+    }
+
+    @Test
+    public void flushClearsBatch() {
+        batch.put("bag", "item", data("a", "1"));
+        batch.flush();
+
+        assertTrue(batch.isEmpty());
+        assertTrue(batch.flush().isEmpty());
+        assertEquals(1, dataBagService.writes.size());
+
+        batch.put("bag", "item", data("b", "1"));
+        assertFalse(batch.isEmpty());
+        batch.flush();
+        assertEquals(data("b", "1"), dataBagService.writes.get(1).get(0).getData());
+    }
+
+    private static Map<String, String> data(String... keysAndValues) {
+        Map<String, String> data = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            data.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return data;
+    }
+
+    private static final class RecordingDataBagService extends ChefDataBagService {
+
+        private final List<List<DataBagItemWrite>> writes = new ArrayList<>();
+
+        @Override
+        public List<DataBagItemWriteResult> updateOrCreateItems(IChefContext context, List<DataBagItemWrite> items) {
+            writes.add(new ArrayList<>(items));
+            List<DataBagItemWriteResult> results = new ArrayList<>();
+            for (DataBagItemWrite item : items) {
+                results.add(new DataBagItemWriteResult(item.getDataBag(), item.getName(), true, 201, null));
+            }
+            return Collections.unmodifiableList(results);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Maestro Cloud Control LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.maestro3.chef.service;
+
+import io.maestro3.chef.client.metrics.ChefClientMetrics;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataBagWriteTrackerTest {
+
+    private static final Map<String, String> FIRST = Collections.singletonMap("key", "first");
+    private static final Map<String, String> SECOND = Collections.singletonMap("key", "second");
+
+    private final DataBagWriteTracker tracker = new DataBagWriteTracker(new ChefClientMetrics(), 100, 5);
+
+    @Test
+    public void recordedContentIsSkipped() {
+        long write = tracker.startWrite("server", "bag", "item");
+        tracker.recordWrite("server", "bag", "item", write, FIRST);
+
+        assertTrue(tracker.skipUnchanged("server", "bag", "item", FIRST));
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", SECOND));
+        assertFalse(tracker.skipUnchanged("other", "bag", "item", FIRST));
+    }
+
+    @Test
+    public void itemIsNotSkippedWhileWriteIsInFlight() {
+        long write = tracker.startWrite("server", "bag", "item");
+        tracker.recordWrite("server", "bag", "item", write, FIRST);
+        tracker.startWrite("server", "bag", "item");
+
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", FIRST));
+    }
+
+    @Test
+    public void earlierWriteFinishingFirstIsNotRecorded() {
+        long first = tracker.startWrite("server", "bag", "item");
+        long second = tracker.startWrite("server", "bag", "item");
+        tracker.recordWrite("server", "bag", "item", first, FIRST);
+        tracker.recordWrite("server", "bag", "item", second, SECOND);
+
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", FIRST));
+        assertTrue(tracker.skipUnchanged("server", "bag", "item", SECOND));
+    }
+
+    @Test
+    public void earlierWriteFinishingLastForgetsItem() {
+        long first = tracker.startWrite("server", "bag", "item");
+        long second = tracker.startWrite("server", "bag", "item");
+        tracker.recordWrite("server", "bag", "item", second, SECOND);
+        tracker.recordWrite("server", "bag", "item", first, FIRST);
+
+        // server may hold either content now
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", FIRST));
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", SECOND));
+    }
+
+    @Test
+    public void invalidatedDataBagIsRewritten() {
+        long write = tracker.startWrite("server", "bag", "item");
+        tracker.recordWrite("server", "bag", "item", write, FIRST);
+        tracker.invalidateDataBag("server", "bag");
+
+        assertFalse(tracker.skipUnchanged("server", "bag", "item", FIRST));
+    }
+}